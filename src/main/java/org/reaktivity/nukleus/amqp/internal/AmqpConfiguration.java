@@ -29,9 +29,33 @@ public class AmqpConfiguration extends Configuration
     public static final LongPropertyDef AMQP_INITIAL_DEVIVERY_COUNT;
     public static final IntPropertyDef AMQP_CLOSE_EXCHANGE_TIMEOUT;
     public static final PropertyDef<String[]> AMQP_INCOMING_LOCALES;
+    public static final PropertyDef<String[]> AMQP_RELAY_BARE_ADDRESSES;
+    public static final IntPropertyDef AMQP_IDLE_TIMER_TICK;
+    public static final BooleanPropertyDef AMQP_LINK_CREDIT_AUTOTUNE;
+    public static final IntPropertyDef AMQP_LINK_CREDIT_MIN;
+    public static final IntPropertyDef AMQP_LINK_CREDIT_MAX;
+    public static final BooleanPropertyDef AMQP_LINK_SCHEDULING;
+    public static final IntPropertyDef AMQP_LINK_WEIGHT;
+    public static final BooleanPropertyDef AMQP_LINK_PRIORITIZATION;
+    public static final BooleanPropertyDef AMQP_PARTIAL_TRANSFERS;
+    public static final LongPropertyDef AMQP_DRAIN_TIMEOUT;
+    public static final IntPropertyDef AMQP_NETWORK_WINDOW_THRESHOLD;
+    public static final BooleanPropertyDef AMQP_FLOW_COALESCING;
+    public static final IntPropertyDef AMQP_FLOW_CREDIT_THRESHOLD;
+    public static final IntPropertyDef AMQP_DISPOSITION_BATCH_SIZE;
+    public static final LongPropertyDef AMQP_SETTLE_TIMEOUT;
+    public static final IntPropertyDef AMQP_RECOVERY_LINKS;
+    public static final IntPropertyDef AMQP_RECOVERY_DELIVERIES;
+    public static final LongPropertyDef AMQP_RECOVERY_TIMEOUT;
+    public static final IntPropertyDef AMQP_REDELIVERY_MAX;
+    public static final LongPropertyDef AMQP_REDELIVERY_DELAY;
+    public static final LongPropertyDef AMQP_REDELIVERY_DELAY_MAX;
+    public static final PropertyDef<String> AMQP_REDELIVERY_DEAD_LETTER_ADDRESS;
+    public static final IntPropertyDef AMQP_DEDUP_DELIVERIES;
     private static final ConfigurationDef AMQP_CONFIG;
 
     public static final String[] AMQP_INCOMING_LOCALES_DEFAULT = { "en-US" };
+    public static final String[] AMQP_RELAY_BARE_ADDRESSES_DEFAULT = {};
 
     static
     {
@@ -47,6 +71,31 @@ public class AmqpConfiguration extends Configuration
         AMQP_CLOSE_EXCHANGE_TIMEOUT = config.property("close.exchange.timeout", 10000);
         AMQP_INCOMING_LOCALES = config.property(String[].class, "incoming.locales",
             s -> s.split("\\s+"), c -> AMQP_INCOMING_LOCALES_DEFAULT);
+        AMQP_RELAY_BARE_ADDRESSES = config.property(String[].class, "relay.bare.addresses",
+            s -> s.split("\\s+"), c -> AMQP_RELAY_BARE_ADDRESSES_DEFAULT);
+        AMQP_IDLE_TIMER_TICK = config.property("idle.timer.tick", 100);
+        AMQP_LINK_CREDIT_AUTOTUNE = config.property("link.credit.autotune", false);
+        AMQP_LINK_CREDIT_MIN = config.property("link.credit.min", 1);
+        AMQP_LINK_CREDIT_MAX = config.property("link.credit.max", 65535);
+        AMQP_LINK_SCHEDULING = config.property("link.scheduling", false);
+        AMQP_LINK_WEIGHT = config.property("link.weight", 1);
+        AMQP_LINK_PRIORITIZATION = config.property("link.prioritization", false);
+        AMQP_PARTIAL_TRANSFERS = config.property("partial.transfers", false);
+        AMQP_DRAIN_TIMEOUT = config.property("drain.timeout", 0L);
+        AMQP_NETWORK_WINDOW_THRESHOLD = config.property("network.window.threshold", 50);
+        AMQP_FLOW_COALESCING = config.property("flow.coalescing", false);
+        AMQP_FLOW_CREDIT_THRESHOLD = config.property("flow.credit.threshold", 50);
+        AMQP_DISPOSITION_BATCH_SIZE = config.property("disposition.batch.size", 1);
+        AMQP_SETTLE_TIMEOUT = config.property("settle.timeout", 30000L);
+        AMQP_RECOVERY_LINKS = config.property("recovery.links", 0);
+        AMQP_RECOVERY_DELIVERIES = config.property("recovery.deliveries", 1024);
+        AMQP_RECOVERY_TIMEOUT = config.property("recovery.timeout", 60000L);
+        AMQP_REDELIVERY_MAX = config.property("redelivery.max", 0);
+        AMQP_REDELIVERY_DELAY = config.property("redelivery.delay", 100L);
+        AMQP_REDELIVERY_DELAY_MAX = config.property("redelivery.delay.max", 30000L);
+        AMQP_REDELIVERY_DEAD_LETTER_ADDRESS = config.property(String.class, "redelivery.dead.letter.address",
+            s -> s, c -> null);
+        AMQP_DEDUP_DELIVERIES = config.property("dedup.deliveries", 0);
         AMQP_CONFIG = config;
     }
 
@@ -105,4 +154,120 @@ public class AmqpConfiguration extends Configuration
     {
         return AMQP_INCOMING_LOCALES.get(this);
     }
+
+    public String[] relayBareAddresses()
+    {
+        return AMQP_RELAY_BARE_ADDRESSES.get(this);
+    }
+
+    public int idleTimerTick()
+    {
+        return AMQP_IDLE_TIMER_TICK.getAsInt(this);
+    }
+
+    public boolean linkCreditAutotune()
+    {
+        return AMQP_LINK_CREDIT_AUTOTUNE.getAsBoolean(this);
+    }
+
+    public int linkCreditMin()
+    {
+        return AMQP_LINK_CREDIT_MIN.getAsInt(this);
+    }
+
+    public int linkCreditMax()
+    {
+        return AMQP_LINK_CREDIT_MAX.getAsInt(this);
+    }
+
+    public boolean linkScheduling()
+    {
+        // link.prioritization orders the queues of the link scheduler, so it implies link.scheduling
+        return AMQP_LINK_SCHEDULING.getAsBoolean(this) || AMQP_LINK_PRIORITIZATION.getAsBoolean(this);
+    }
+
+    public int linkWeight()
+    {
+        return AMQP_LINK_WEIGHT.getAsInt(this);
+    }
+
+    public boolean linkPrioritization()
+    {
+        return AMQP_LINK_PRIORITIZATION.getAsBoolean(this);
+    }
+
+    public boolean partialTransfers()
+    {
+        return AMQP_PARTIAL_TRANSFERS.getAsBoolean(this);
+    }
+
+    public long drainTimeout()
+    {
+        return AMQP_DRAIN_TIMEOUT.getAsLong(this);
+    }
+
+    public int networkWindowThreshold()
+    {
+        return AMQP_NETWORK_WINDOW_THRESHOLD.getAsInt(this);
+    }
+
+    public boolean flowCoalescing()
+    {
+        return AMQP_FLOW_COALESCING.getAsBoolean(this);
+    }
+
+    public int flowCreditThreshold()
+    {
+        return AMQP_FLOW_CREDIT_THRESHOLD.getAsInt(this);
+    }
+
+    public int dispositionBatchSize()
+    {
+        return AMQP_DISPOSITION_BATCH_SIZE.getAsInt(this);
+    }
+
+    public long settleTimeout()
+    {
+        return AMQP_SETTLE_TIMEOUT.getAsLong(this);
+    }
+
+    public int recoveryLinks()
+    {
+        return AMQP_RECOVERY_LINKS.getAsInt(this);
+    }
+
+    public int recoveryDeliveries()
+    {
+        return AMQP_RECOVERY_DELIVERIES.getAsInt(this);
+    }
+
+    public long recoveryTimeout()
+    {
+        return AMQP_RECOVERY_TIMEOUT.getAsLong(this);
+    }
+
+    public int redeliveryMax()
+    {
+        return AMQP_REDELIVERY_MAX.getAsInt(this);
+    }
+
+    public long redeliveryDelay()
+    {
+        return AMQP_REDELIVERY_DELAY.getAsLong(this);
+    }
+
+    public long redeliveryDelayMax()
+    {
+        return AMQP_REDELIVERY_DELAY_MAX.getAsLong(this);
+    }
+
+    public String redeliveryDeadLetterAddress()
+    {
+        return AMQP_REDELIVERY_DEAD_LETTER_ADDRESS.get(this);
+    }
+
+    public int dedupDeliveries()
+    {
+        return AMQP_DEDUP_DELIVERIES.getAsInt(this);
+    }
 }
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+public final class AmqpCreditTuner
+{
+    private static final long NO_TIMESTAMP = -1L;
+    private static final long SAMPLE_INTERVAL_MILLIS = 100L;
+    private static final double SMOOTHING_GAIN = 0.25;
+    private static final double BANDWIDTH_DELAY_HEADROOM = 2.0;
+
+    private final int minCredit;
+    private final int maxCredit;
+
+    private long sampleStartAt = NO_TIMESTAMP;
+    private int sampleDeliveries;
+    private double deliveryRate;
+    private double roundTripTime;
+    private long echoRequestedAt = NO_TIMESTAMP;
+    private long echoCreditLimit;
+    private boolean sampleLimited;
+    private int probeCredit;
+    private int credit;
+
+    public AmqpCreditTuner(
+        int minCredit,
+        int maxCredit)
+    {
+        assert minCredit > 0;
+        assert minCredit <= maxCredit;
+
+        this.minCredit = minCredit;
+        this.maxCredit = maxCredit;
+        this.credit = maxCredit;
+    }
+
+    public void onDelivery(
+        long now)
+    {
+        if (sampleStartAt == NO_TIMESTAMP)
+        {
+            sampleStartAt = now;
+        }
+
+        sampleDeliveries++;
+
+        final long elapsed = now - sampleStartAt;
+        if (elapsed >= SAMPLE_INTERVAL_MILLIS)
+        {
+            final double sampleRate = (double) sampleDeliveries / elapsed;
+            deliveryRate = deliveryRate == 0.0 ? sampleRate : smooth(deliveryRate, sampleRate);
+            sampleStartAt = now;
+            sampleDeliveries = 0;
+
+            if (!sampleLimited)
+            {
+                probeCredit = 0;
+            }
+            sampleLimited = false;
+        }
+    }
+
+    public void onCreditExhausted()
+    {
+        // delivery rate is capped by credit / round trip, so probe beyond the credit granted
+        sampleLimited = true;
+        probeCredit = (int) Math.min(Math.max(probeCredit, credit) * 2L, maxCredit);
+    }
+
+    public boolean onEchoRequested(
+        long now,
+        long creditLimit)
+    {
+        final boolean requested = echoRequestedAt == NO_TIMESTAMP || echoCreditLimit != creditLimit;
+        if (requested)
+        {
+            echoRequestedAt = now;
+            echoCreditLimit = creditLimit;
+        }
+        return requested;
+    }
+
+    public void onFlow(
+        long now,
+        long creditLimit)
+    {
+        if (echoRequestedAt != NO_TIMESTAMP && echoCreditLimit == creditLimit)
+        {
+            final double sampleTime = Math.max(now - echoRequestedAt, 1L);
+            roundTripTime = roundTripTime == 0.0 ? sampleTime : smooth(roundTripTime, sampleTime);
+            echoRequestedAt = NO_TIMESTAMP;
+        }
+    }
+
+    public int credit()
+    {
+        int credit = maxCredit;
+
+        if (deliveryRate != 0.0 && roundTripTime != 0.0)
+        {
+            final double bandwidthDelay = deliveryRate * roundTripTime * BANDWIDTH_DELAY_HEADROOM;
+            credit = (int) Math.max(Math.min(Math.ceil(bandwidthDelay), maxCredit), minCredit);
+            credit = Math.max(credit, probeCredit);
+        }
+
+        this.credit = credit;
+
+        return credit;
+    }
+
+    private static double smooth(
+        double current,
+        double sample)
+    {
+        return current + SMOOTHING_GAIN * (sample - current);
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import java.util.Arrays;
+
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+
+public final class AmqpDedupIndex
+{
+    private static final long EMPTY = 0L;
+    private static final int NO_ENTRY = -1;
+    private static final long FNV_OFFSET_BASIS = 0xcbf2_9ce4_8422_2325L;
+    private static final long FNV_PRIME = 0x0000_0100_0000_01b3L;
+
+    private final int[] table;
+    private final long[] fingerprints;
+    private final int[] previous;
+    private final int[] next;
+    private final int mask;
+
+    private int head = NO_ENTRY;
+    private int tail = NO_ENTRY;
+    private int free = NO_ENTRY;
+    private int allocated;
+    private int size;
+
+    public AmqpDedupIndex(
+        int maxSize)
+    {
+        assert maxSize > 0;
+
+        this.table = new int[BitUtil.findNextPositivePowerOfTwo(maxSize << 1)];
+        this.fingerprints = new long[maxSize];
+        this.previous = new int[maxSize];
+        this.next = new int[maxSize];
+        this.mask = table.length - 1;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean contains(
+        long fingerprint)
+    {
+        return table[find(fingerprint)] != 0;
+    }
+
+    public boolean add(
+        long fingerprint)
+    {
+        assert fingerprint != EMPTY;
+
+        final boolean added = !contains(fingerprint);
+
+        if (added)
+        {
+            if (size == fingerprints.length)
+            {
+                remove(fingerprints[head]);
+            }
+
+            final int entry = allocate();
+            fingerprints[entry] = fingerprint;
+            previous[entry] = tail;
+            next[entry] = NO_ENTRY;
+            if (tail != NO_ENTRY)
+            {
+                next[tail] = entry;
+            }
+            else
+            {
+                head = entry;
+            }
+            tail = entry;
+
+            table[find(fingerprint)] = entry + 1;
+            size++;
+        }
+
+        return added;
+    }
+
+    public boolean remove(
+        long fingerprint)
+    {
+        int slot = find(fingerprint);
+        final int entry = table[slot] - 1;
+        final boolean removed = entry != NO_ENTRY;
+
+        if (removed)
+        {
+            table[slot] = 0;
+
+            // backward shift keeps every remaining probe sequence unbroken
+            for (int probe = (slot + 1) & mask; table[probe] != 0; probe = (probe + 1) & mask)
+            {
+                final int home = home(fingerprints[table[probe] - 1]);
+                if (((probe - home) & mask) >= ((probe - slot) & mask))
+                {
+                    table[slot] = table[probe];
+                    table[probe] = 0;
+                    slot = probe;
+                }
+            }
+
+            unlink(entry);
+            size--;
+        }
+
+        return removed;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(table, 0);
+        head = NO_ENTRY;
+        tail = NO_ENTRY;
+        free = NO_ENTRY;
+        allocated = 0;
+        size = 0;
+    }
+
+    public static long fingerprint(
+        DirectBuffer buffer,
+        int offset,
+        int length)
+    {
+        long hash = FNV_OFFSET_BASIS;
+        for (int index = 0; index < length; index++)
+        {
+            hash ^= buffer.getByte(offset + index) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash != EMPTY ? hash : FNV_OFFSET_BASIS;
+    }
+
+    private int allocate()
+    {
+        int entry = free;
+        if (entry != NO_ENTRY)
+        {
+            free = next[entry];
+        }
+        else
+        {
+            entry = allocated++;
+        }
+        return entry;
+    }
+
+    private void unlink(
+        int entry)
+    {
+        final int before = previous[entry];
+        final int after = next[entry];
+
+        if (before != NO_ENTRY)
+        {
+            next[before] = after;
+        }
+        else
+        {
+            head = after;
+        }
+
+        if (after != NO_ENTRY)
+        {
+            previous[after] = before;
+        }
+        else
+        {
+            tail = before;
+        }
+
+        next[entry] = free;
+        free = entry;
+    }
+
+    private int find(
+        long fingerprint)
+    {
+        int slot = home(fingerprint);
+        while (table[slot] != 0 && fingerprints[table[slot] - 1] != fingerprint)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int home(
+        long fingerprint)
+    {
+        final int hash = (int) (fingerprint ^ (fingerprint >>> 32)) * 0x9e37_79b9;
+        return (hash >>> 1) & mask;
+    }
+}
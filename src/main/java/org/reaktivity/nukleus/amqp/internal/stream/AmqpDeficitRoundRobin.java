@@ -0,0 +1,249 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+
+public final class AmqpDeficitRoundRobin
+{
+    public static final int NO_QUEUE = -1;
+
+    private static final int STATE_FREE = 0;
+    private static final int STATE_IDLE = 1;
+    private static final int STATE_ACTIVE = 2;
+    private static final int STATE_CREDITED = 3;
+
+    private final IntBinaryOperator drain;
+    private final IntUnaryOperator pending;
+
+    private int[] states;
+    private int[] weights;
+    private long[] deficits;
+    private int[] next;
+
+    private int freeHead;
+    private int activeHead;
+    private int activeTail;
+    private int size;
+
+    public AmqpDeficitRoundRobin(
+        IntBinaryOperator drain,
+        IntUnaryOperator pending,
+        int initialCapacity)
+    {
+        assert initialCapacity > 0;
+
+        this.drain = drain;
+        this.pending = pending;
+        this.states = new int[0];
+        this.weights = new int[0];
+        this.deficits = new long[0];
+        this.next = new int[0];
+        this.freeHead = NO_QUEUE;
+        this.activeHead = NO_QUEUE;
+        this.activeTail = NO_QUEUE;
+
+        ensureCapacity(initialCapacity);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return activeHead == NO_QUEUE;
+    }
+
+    public int weight(
+        int entryId)
+    {
+        assert states[entryId] != STATE_FREE;
+        return weights[entryId];
+    }
+
+    public int add(
+        int weight)
+    {
+        assert weight > 0;
+
+        if (freeHead == NO_QUEUE)
+        {
+            ensureCapacity(states.length << 1);
+        }
+
+        final int entryId = freeHead;
+        freeHead = next[entryId];
+
+        states[entryId] = STATE_IDLE;
+        weights[entryId] = weight;
+        deficits[entryId] = 0L;
+        next[entryId] = NO_QUEUE;
+        size++;
+
+        return entryId;
+    }
+
+    public void remove(
+        int entryId)
+    {
+        assert states[entryId] != STATE_FREE;
+
+        if (states[entryId] != STATE_IDLE)
+        {
+            unlink(entryId);
+        }
+
+        states[entryId] = STATE_FREE;
+        next[entryId] = freeHead;
+        freeHead = entryId;
+        size--;
+    }
+
+    public void activate(
+        int entryId)
+    {
+        assert states[entryId] != STATE_FREE;
+
+        if (states[entryId] == STATE_IDLE)
+        {
+            states[entryId] = STATE_ACTIVE;
+            append(entryId);
+        }
+    }
+
+    public int flush(
+        int quantum)
+    {
+        assert quantum > 0;
+
+        int flushed = 0;
+
+        while (activeHead != NO_QUEUE)
+        {
+            final int entryId = activeHead;
+
+            if (states[entryId] == STATE_ACTIVE)
+            {
+                deficits[entryId] += (long) quantum * weights[entryId];
+                states[entryId] = STATE_CREDITED;
+            }
+
+            final int limit = (int) Math.min(deficits[entryId], Integer.MAX_VALUE);
+            final int drained = drain.applyAsInt(entryId, limit);
+            assert drained <= limit;
+
+            deficits[entryId] -= drained;
+            flushed += drained;
+
+            final int pendingSize = pending.applyAsInt(entryId);
+            if (pendingSize == 0)
+            {
+                activeHead = next[entryId];
+                if (activeHead == NO_QUEUE)
+                {
+                    activeTail = NO_QUEUE;
+                }
+                next[entryId] = NO_QUEUE;
+                deficits[entryId] = 0L;
+                states[entryId] = STATE_IDLE;
+            }
+            else if (pendingSize <= deficits[entryId])
+            {
+                // drain blocked by the caller, resume here on next flush
+                break;
+            }
+            else
+            {
+                states[entryId] = STATE_ACTIVE;
+                if (activeHead != activeTail)
+                {
+                    activeHead = next[entryId];
+                    next[entryId] = NO_QUEUE;
+                    append(entryId);
+                }
+            }
+        }
+
+        return flushed;
+    }
+
+    private void append(
+        int entryId)
+    {
+        if (activeTail == NO_QUEUE)
+        {
+            activeHead = entryId;
+        }
+        else
+        {
+            next[activeTail] = entryId;
+        }
+        activeTail = entryId;
+    }
+
+    private void unlink(
+        int entryId)
+    {
+        int previous = NO_QUEUE;
+        int current = activeHead;
+        while (current != entryId)
+        {
+            assert current != NO_QUEUE;
+            previous = current;
+            current = next[current];
+        }
+
+        if (previous == NO_QUEUE)
+        {
+            activeHead = next[entryId];
+        }
+        else
+        {
+            next[previous] = next[entryId];
+        }
+
+        if (activeTail == entryId)
+        {
+            activeTail = previous;
+        }
+        next[entryId] = NO_QUEUE;
+    }
+
+    private void ensureCapacity(
+        int capacity)
+    {
+        final int oldCapacity = states.length;
+
+        if (capacity > oldCapacity)
+        {
+            states = Arrays.copyOf(states, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+            deficits = Arrays.copyOf(deficits, capacity);
+            next = Arrays.copyOf(next, capacity);
+
+            for (int entryId = capacity - 1; entryId >= oldCapacity; entryId--)
+            {
+                states[entryId] = STATE_FREE;
+                next[entryId] = freeHead;
+                freeHead = entryId;
+            }
+        }
+    }
+}
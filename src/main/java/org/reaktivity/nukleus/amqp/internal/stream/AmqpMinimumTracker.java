@@ -0,0 +1,209 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import java.util.Arrays;
+
+public final class AmqpMinimumTracker
+{
+    public static final int NO_ENTRY = -1;
+
+    private int[] heap;
+    private int[] positions;
+    private int[] values;
+
+    private int freeHead;
+    private int size;
+
+    public AmqpMinimumTracker(
+        int initialCapacity)
+    {
+        assert initialCapacity > 0;
+
+        this.heap = new int[0];
+        this.positions = new int[0];
+        this.values = new int[0];
+        this.freeHead = NO_ENTRY;
+
+        ensureCapacity(initialCapacity);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int minimum()
+    {
+        return size != 0 ? values[heap[0]] : Integer.MAX_VALUE;
+    }
+
+    public int value(
+        int entryId)
+    {
+        assert positions[entryId] != NO_ENTRY;
+        return values[entryId];
+    }
+
+    public int add(
+        int value)
+    {
+        if (freeHead == NO_ENTRY)
+        {
+            ensureCapacity(values.length << 1);
+        }
+
+        final int entryId = freeHead;
+        freeHead = values[entryId];
+
+        values[entryId] = value;
+        heap[size] = entryId;
+        positions[entryId] = size;
+        size++;
+
+        siftUp(size - 1);
+
+        return entryId;
+    }
+
+    public void update(
+        int entryId,
+        int value)
+    {
+        final int position = positions[entryId];
+        assert position != NO_ENTRY;
+
+        final int previous = values[entryId];
+        values[entryId] = value;
+
+        if (value < previous)
+        {
+            siftUp(position);
+        }
+        else if (value > previous)
+        {
+            siftDown(position);
+        }
+    }
+
+    public void remove(
+        int entryId)
+    {
+        final int position = positions[entryId];
+        assert position != NO_ENTRY;
+
+        size--;
+        if (position != size)
+        {
+            final int lastId = heap[size];
+            heap[position] = lastId;
+            positions[lastId] = position;
+
+            siftUp(position);
+            siftDown(positions[lastId]);
+        }
+
+        positions[entryId] = NO_ENTRY;
+        values[entryId] = freeHead;
+        freeHead = entryId;
+    }
+
+    private void siftUp(
+        int position)
+    {
+        final int entryId = heap[position];
+        final int value = values[entryId];
+
+        int current = position;
+        while (current > 0)
+        {
+            final int parent = (current - 1) >> 1;
+            final int parentId = heap[parent];
+            if (values[parentId] <= value)
+            {
+                break;
+            }
+
+            heap[current] = parentId;
+            positions[parentId] = current;
+            current = parent;
+        }
+
+        heap[current] = entryId;
+        positions[entryId] = current;
+    }
+
+    private void siftDown(
+        int position)
+    {
+        final int entryId = heap[position];
+        final int value = values[entryId];
+
+        int current = position;
+        while (true)
+        {
+            int child = (current << 1) + 1;
+            if (child >= size)
+            {
+                break;
+            }
+
+            final int right = child + 1;
+            if (right < size && values[heap[right]] < values[heap[child]])
+            {
+                child = right;
+            }
+
+            final int childId = heap[child];
+            if (value <= values[childId])
+            {
+                break;
+            }
+
+            heap[current] = childId;
+            positions[childId] = current;
+            current = child;
+        }
+
+        heap[current] = entryId;
+        positions[entryId] = current;
+    }
+
+    private void ensureCapacity(
+        int capacity)
+    {
+        final int oldCapacity = values.length;
+
+        if (capacity > oldCapacity)
+        {
+            heap = Arrays.copyOf(heap, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            values = Arrays.copyOf(values, capacity);
+
+            for (int entryId = capacity - 1; entryId >= oldCapacity; entryId--)
+            {
+                positions[entryId] = NO_ENTRY;
+                values[entryId] = freeHead;
+                freeHead = entryId;
+            }
+        }
+    }
+}
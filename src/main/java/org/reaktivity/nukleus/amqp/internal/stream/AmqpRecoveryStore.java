@@ -0,0 +1,152 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+public final class AmqpRecoveryStore
+{
+    private final Map<RecoveryKey, Recovery> recoveries;
+    private final RecoveryKey lookupKey;
+    private final int maxSize;
+    private final long timeout;
+
+    public AmqpRecoveryStore(
+        int maxSize,
+        long timeout)
+    {
+        assert maxSize > 0;
+
+        this.recoveries = new LinkedHashMap<>();
+        this.lookupKey = new RecoveryKey();
+        this.maxSize = maxSize;
+        this.timeout = timeout;
+    }
+
+    public int size()
+    {
+        return recoveries.size();
+    }
+
+    public void store(
+        long authorization,
+        String containerId,
+        String name,
+        AmqpUnsettledMap deliveries,
+        long now)
+    {
+        final RecoveryKey key = new RecoveryKey().set(authorization, containerId, name);
+        recoveries.remove(key);
+        recoveries.put(key, new Recovery(deliveries, now + timeout));
+
+        expire(now);
+
+        final Iterator<Recovery> eldest = recoveries.values().iterator();
+        while (recoveries.size() > maxSize)
+        {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    public AmqpUnsettledMap take(
+        long authorization,
+        String containerId,
+        String name,
+        long now)
+    {
+        final Recovery recovery = recoveries.remove(lookupKey.set(authorization, containerId, name));
+
+        expire(now);
+
+        return recovery != null && recovery.expiresAt > now ? recovery.deliveries : null;
+    }
+
+    private void expire(
+        long now)
+    {
+        // snapshots share one timeout, so insertion order is expiry order
+        final Iterator<Recovery> eldest = recoveries.values().iterator();
+        while (eldest.hasNext() && eldest.next().expiresAt <= now)
+        {
+            eldest.remove();
+        }
+    }
+
+    private static final class Recovery
+    {
+        private final AmqpUnsettledMap deliveries;
+        private final long expiresAt;
+
+        private Recovery(
+            AmqpUnsettledMap deliveries,
+            long expiresAt)
+        {
+            this.deliveries = deliveries;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class RecoveryKey
+    {
+        private long authorization;
+        private String containerId;
+        private String name;
+
+        private RecoveryKey set(
+            long authorization,
+            String containerId,
+            String name)
+        {
+            this.authorization = authorization;
+            this.containerId = containerId;
+            this.name = name;
+            return this;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = Long.hashCode(authorization);
+            result = 31 * result + Objects.hashCode(containerId);
+            result = 31 * result + Objects.hashCode(name);
+            return result;
+        }
+
+        @Override
+        public boolean equals(
+            Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+
+            if (!(obj instanceof RecoveryKey))
+            {
+                return false;
+            }
+
+            final RecoveryKey that = (RecoveryKey) obj;
+            return this.authorization == that.authorization &&
+                Objects.equals(this.containerId, that.containerId) &&
+                Objects.equals(this.name, that.name);
+        }
+    }
+}
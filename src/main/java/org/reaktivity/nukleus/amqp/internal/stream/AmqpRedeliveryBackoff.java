@@ -0,0 +1,53 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+public final class AmqpRedeliveryBackoff
+{
+    private final long initialDelay;
+    private final long maxDelay;
+    private final int maxRedeliveries;
+
+    public AmqpRedeliveryBackoff(
+        long initialDelay,
+        long maxDelay,
+        int maxRedeliveries)
+    {
+        assert initialDelay > 0L;
+        assert initialDelay <= maxDelay;
+        assert maxRedeliveries > 0;
+
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.maxRedeliveries = maxRedeliveries;
+    }
+
+    public boolean exhausted(
+        int redeliveries)
+    {
+        return redeliveries >= maxRedeliveries;
+    }
+
+    public long delay(
+        int redeliveries)
+    {
+        assert redeliveries >= 0;
+
+        // doubling stops before the delay overflows, the cap is applied afterwards
+        final int shift = Math.min(redeliveries, Long.numberOfLeadingZeros(initialDelay) - 1);
+        return Math.min(initialDelay << shift, maxDelay);
+    }
+}
@@ -25,9 +25,12 @@ import static org.reaktivity.nukleus.amqp.internal.AmqpConfiguration.AMQP_INCOMI
 import static org.reaktivity.nukleus.amqp.internal.stream.AmqpConnectionState.DISCARDING;
 import static org.reaktivity.nukleus.amqp.internal.stream.AmqpConnectionState.ERROR;
 import static org.reaktivity.nukleus.amqp.internal.stream.AmqpConnectionState.START;
+import static org.reaktivity.nukleus.amqp.internal.stream.AmqpDeficitRoundRobin.NO_QUEUE;
+import static org.reaktivity.nukleus.amqp.internal.stream.AmqpMinimumTracker.NO_ENTRY;
 import static org.reaktivity.nukleus.amqp.internal.stream.AmqpSessionState.END_RCVD;
 import static org.reaktivity.nukleus.amqp.internal.stream.AmqpSessionState.MAPPED;
 import static org.reaktivity.nukleus.amqp.internal.stream.AmqpSessionState.UNMAPPED;
+import static org.reaktivity.nukleus.amqp.internal.stream.AmqpTimerWheel.NO_TIMER;
 import static org.reaktivity.nukleus.amqp.internal.stream.AmqpTransferFlags.aborted;
 import static org.reaktivity.nukleus.amqp.internal.stream.AmqpTransferFlags.batchable;
 import static org.reaktivity.nukleus.amqp.internal.stream.AmqpTransferFlags.isSettled;
@@ -40,11 +43,17 @@ import static org.reaktivity.nukleus.amqp.internal.types.AmqpCapabilities.SEND_A
 import static org.reaktivity.nukleus.amqp.internal.types.AmqpCapabilities.SEND_ONLY;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpBeginFW.DEFAULT_VALUE_HANDLE_MAX;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.APPLICATION_PROPERTIES;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.COORDINATOR;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.DATA;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.DECLARE;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.DISCHARGE;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.MESSAGE_ANNOTATIONS;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.MODIFIED;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.PROPERTIES;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.RELEASED;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.SASL_INIT;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.SEQUENCE;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.TRANSACTIONAL_STATE;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType.VALUE;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpErrorType.CONNECTION_FRAMING_ERROR;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpErrorType.DECODE_ERROR;
@@ -60,24 +69,44 @@ import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpErrorType.SES
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpErrorType.SESSION_HANDLE_IN_USE;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpErrorType.SESSION_UNATTACHED_HANDLE;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpErrorType.SESSION_WINDOW_VIOLATION;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpErrorType.TRANSACTION_UNKNOWN_ID;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpOpenFW.DEFAULT_VALUE_MAX_FRAME_SIZE;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpPerformativeType.ATTACH;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpPerformativeType.BEGIN;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpPerformativeType.CLOSE;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpPerformativeType.DETACH;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpPerformativeType.DISPOSITION;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpPerformativeType.END;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpPerformativeType.FLOW;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpPerformativeType.OPEN;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpPerformativeType.TRANSFER;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpReceiverSettleMode.FIRST;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpReceiverSettleMode.SECOND;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpRole.RECEIVER;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpRole.SENDER;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpSaslCode.OK;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpSenderSettleMode.MIXED;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpSenderSettleMode.SETTLED;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.BINARY1;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.BINARY4;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.FALSE;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.LIST1;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.LIST4;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.MAP1;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.MAP4;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.NULL;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.STRING1;
 import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.STRING4;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.SYMBOL1;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.SYMBOL4;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.TIMESTAMP;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.TRUE;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.UINT0;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.UINT1;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.UINT4;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.ULONG0;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.ULONG1;
+import static org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType.ULONG8;
 import static org.reaktivity.nukleus.amqp.internal.util.AmqpTypeUtil.amqpCapabilities;
 import static org.reaktivity.nukleus.amqp.internal.util.AmqpTypeUtil.amqpReceiverSettleMode;
 import static org.reaktivity.nukleus.amqp.internal.util.AmqpTypeUtil.amqpSenderSettleMode;
@@ -87,15 +116,25 @@ import static org.reaktivity.nukleus.buffer.BufferPool.NO_SLOT;
 import static org.reaktivity.nukleus.concurrent.Signaler.NO_CANCEL_ID;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 import java.util.function.LongFunction;
 import java.util.function.LongSupplier;
 import java.util.function.LongUnaryOperator;
 import java.util.function.ToIntFunction;
 
 import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.collections.Int2ObjectHashMap;
 import org.agrona.collections.Long2ObjectHashMap;
@@ -121,9 +160,15 @@ import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpAttachFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpBeginFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpBinaryFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpCloseFW;
+import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpCoordinatorFW;
+import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDeclareFW;
+import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDeliveryStateFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedType;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDescribedTypeFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDetachFW;
+import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDischargeFW;
+import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDischargeListFW;
+import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpDispositionFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpEndFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpErrorListFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpErrorType;
@@ -131,6 +176,7 @@ import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpFlowFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpFrameHeaderFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpHeaderFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpIETFLanguageTagFW;
+import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpListFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpMapFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpMessagePropertiesFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpOpenFW;
@@ -156,7 +202,6 @@ import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpTargetFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpTargetListFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpTransferFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpType;
-import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpULongFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpValueFW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpVariableLength32FW;
 import org.reaktivity.nukleus.amqp.internal.types.codec.AmqpVariableLength8FW;
@@ -194,19 +239,82 @@ public final class AmqpServerFactory implements StreamFactory
     private static final int FLAG_INIT_INCOMPLETE = FLAG_INIT | FLAG_INCOMPLETE;
     private static final int FLAG_INIT_AND_FIN = FLAG_INIT | FLAG_FIN;
     private static final int FRAME_HEADER_SIZE = 8;
+    private static final int FRAME_HEADER_CHANNEL_OFFSET = 6;
     private static final int SASL_DESCRIPTOR_SIZE = 3;
     private static final int MIN_MAX_FRAME_SIZE = 512;
     private static final int TRANSFER_HEADER_SIZE = 20;
     private static final int PAYLOAD_HEADER_SIZE = 205;
     private static final int NO_DELIVERY_ID = -1;
+    private static final int DISPOSITION_LIST_HEADER_SIZE = 3;
+    private static final int DISPOSITION_FIELD_COUNT = 5;
+    private static final int INITIAL_NEXT_OUTGOING_ID = 1;
     private static final int PLAIN_PROTOCOL_ID = 0;
     private static final int SASL_PROTOCOL_ID = 3;
     private static final long PROTOCOL_HEADER = 0x414D5150_00010000L;
     private static final long DEFAULT_IDLE_TIMEOUT = 0;
-    private static final int READ_IDLE_SIGNAL_ID = 0;
-    private static final int WRITE_IDLE_SIGNAL_ID = 1;
+    private static final int INITIAL_SESSIONS_CAPACITY = 4;
+    private static final int INITIAL_LINKS_CAPACITY = 4;
+    private static final int MAX_LINK_WEIGHT = 255;
+    private static final String LINK_WEIGHT_PROPERTY = "weight";
+    private static final byte[] PRIORITY_ANNOTATION = "x-opt-priority".getBytes(UTF_8);
+    private static final int DEFAULT_PRIORITY = 4;
+    private static final int MAX_PRIORITY = 9;
+    private static final int NO_PRIORITY = -1;
+    private static final int PENDING_HEADS_OFFSET = 0;
+    private static final int PENDING_TAILS_OFFSET = PENDING_HEADS_OFFSET + (MAX_PRIORITY + 1) * Integer.BYTES;
+    private static final int PENDING_RECORDS_OFFSET = PENDING_TAILS_OFFSET + (MAX_PRIORITY + 1) * Integer.BYTES;
+    private static final int PENDING_SIZE_OFFSET = 0;
+    private static final int PENDING_PRIORITY_OFFSET = PENDING_SIZE_OFFSET + Integer.BYTES;
+    private static final int PENDING_NEXT_OFFSET = PENDING_PRIORITY_OFFSET + Byte.BYTES;
+    private static final int PENDING_TRACE_ID_OFFSET = PENDING_NEXT_OFFSET + Integer.BYTES;
+    private static final int PENDING_AUTHORIZATION_OFFSET = PENDING_TRACE_ID_OFFSET + Long.BYTES;
+    private static final int PENDING_RESERVED_OFFSET = PENDING_AUTHORIZATION_OFFSET + Long.BYTES;
+    private static final int PENDING_EXTENSION_SIZE_OFFSET = PENDING_RESERVED_OFFSET + Integer.BYTES;
+    private static final int PENDING_PAYLOAD_SIZE_OFFSET = PENDING_EXTENSION_SIZE_OFFSET + Integer.BYTES;
+    private static final int PENDING_REDELIVERIES_OFFSET = PENDING_PAYLOAD_SIZE_OFFSET + Integer.BYTES;
+    private static final int PENDING_HEADER_SIZE = PENDING_REDELIVERIES_OFFSET + Integer.BYTES;
+    private static final int TRANSACTION_SIZE_OFFSET = 0;
+    private static final int TRANSACTION_KIND_OFFSET = TRANSACTION_SIZE_OFFSET + Integer.BYTES;
+    private static final int TRANSACTION_CHANNEL_OFFSET = TRANSACTION_KIND_OFFSET + Byte.BYTES;
+    private static final int TRANSACTION_HANDLE_OFFSET = TRANSACTION_CHANNEL_OFFSET + Integer.BYTES;
+    private static final int TRANSACTION_FIRST_OFFSET = TRANSACTION_HANDLE_OFFSET + Long.BYTES;
+    private static final int TRANSACTION_LAST_OFFSET = TRANSACTION_FIRST_OFFSET + Long.BYTES;
+    private static final int TRANSACTION_TRACE_ID_OFFSET = TRANSACTION_LAST_OFFSET + Long.BYTES;
+    private static final int TRANSACTION_AUTHORIZATION_OFFSET = TRANSACTION_TRACE_ID_OFFSET + Long.BYTES;
+    private static final int TRANSACTION_FLAGS_OFFSET = TRANSACTION_AUTHORIZATION_OFFSET + Long.BYTES;
+    private static final int TRANSACTION_RESERVED_OFFSET = TRANSACTION_FLAGS_OFFSET + Integer.BYTES;
+    private static final int TRANSACTION_EXTENSION_SIZE_OFFSET = TRANSACTION_RESERVED_OFFSET + Integer.BYTES;
+    private static final int TRANSACTION_PAYLOAD_SIZE_OFFSET = TRANSACTION_EXTENSION_SIZE_OFFSET + Integer.BYTES;
+    private static final int TRANSACTION_HEADER_SIZE = TRANSACTION_PAYLOAD_SIZE_OFFSET + Integer.BYTES;
+    private static final int TRANSACTION_TRANSFER = 1;
+    private static final int TRANSACTION_DISPOSITION = 2;
+    private static final int DECLARED_TXN_ID_OFFSET = 8;
+    private static final int COORDINATOR_LINK_CREDIT = 64;
+    private static final long NO_HANDLE = -1L;
+    private static final int REDELIVERY_SIZE_OFFSET = 0;
+    private static final int REDELIVERY_DELIVERY_ID_OFFSET = REDELIVERY_SIZE_OFFSET + Integer.BYTES;
+    private static final int REDELIVERY_COUNT_OFFSET = REDELIVERY_DELIVERY_ID_OFFSET + Long.BYTES;
+    private static final int REDELIVERY_DEADLINE_OFFSET = REDELIVERY_COUNT_OFFSET + Integer.BYTES;
+    private static final int REDELIVERY_TRACE_ID_OFFSET = REDELIVERY_DEADLINE_OFFSET + Long.BYTES;
+    private static final int REDELIVERY_AUTHORIZATION_OFFSET = REDELIVERY_TRACE_ID_OFFSET + Long.BYTES;
+    private static final int REDELIVERY_EXTENSION_SIZE_OFFSET = REDELIVERY_AUTHORIZATION_OFFSET + Long.BYTES;
+    private static final int REDELIVERY_PAYLOAD_SIZE_OFFSET = REDELIVERY_EXTENSION_SIZE_OFFSET + Integer.BYTES;
+    private static final int REDELIVERY_HEADER_SIZE = REDELIVERY_PAYLOAD_SIZE_OFFSET + Integer.BYTES;
+    private static final long NO_DEADLINE = -1L;
+    private static final int IDLE_TIMER_SIGNAL_ID = 0;
+    private static final int FLOW_SIGNAL_ID = 1;
+    private static final int IDLE_TIMER_WHEEL_SIZE = 512;
+    private static final int IDLE_TIMER_INITIAL_CAPACITY = 256;
     private static final int CLOSE_SIGNAL_ID = 2;
+    private static final int OVERLOAD_SIGNAL_ID = 3;
+    private static final int DISPOSITION_SIGNAL_ID = 4;
+    private static final int OVERLOAD_SLOT = -2;
+    private static final int UNSETTLED_INITIAL_CAPACITY = 16;
+    private static final int UNSETTLED_MAX_CAPACITY = 16384;
+    private static final int UNSETTLED_ENTRY_MAX_SIZE = 2 + AmqpUnsettledMap.MAX_TAG_SIZE + 4;
     private static final int MIN_IDLE_TIMEOUT = 100;
+    private static final int MESSAGE_PROPERTIES_FIELD_COUNT = 13;
+    private static final int MIN_PARTIAL_FRAGMENT_SIZE = 512;
     private static final long PROTOCOL_HEADER_SASL = 0x414D5150_03010000L;
 
     private final RouteFW routeRO = new RouteFW();
@@ -236,6 +344,15 @@ public final class AmqpServerFactory implements StreamFactory
     private final OctetsFW.Builder messageFragmentRW = new OctetsFW.Builder();
 
     private final OctetsFW payloadRO = new OctetsFW();
+    private final OctetsFW pendingExtensionRO = new OctetsFW();
+    private final OctetsFW pendingPayloadRO = new OctetsFW();
+    private final OctetsFW transactionExtensionRO = new OctetsFW();
+    private final OctetsFW transactionPayloadRO = new OctetsFW();
+    private final OctetsFW declaredStateRO = new OctetsFW();
+    private final OctetsFW redeliveryExtensionRO = new OctetsFW();
+    private final OctetsFW redeliveryPayloadRO = new OctetsFW();
+    private final AmqpDeclareFW amqpDeclareRO = new AmqpDeclareFW();
+    private final AmqpDischargeFW amqpDischargeRO = new AmqpDischargeFW();
 
     private final AmqpProtocolHeaderFW amqpProtocolHeaderRO = new AmqpProtocolHeaderFW();
     private final AmqpFrameHeaderFW amqpFrameHeaderRO = new AmqpFrameHeaderFW();
@@ -246,6 +363,7 @@ public final class AmqpServerFactory implements StreamFactory
     private final AmqpAttachFW amqpAttachRO = new AmqpAttachFW();
     private final AmqpFlowFW amqpFlowRO = new AmqpFlowFW();
     private final AmqpTransferFW amqpTransferRO = new AmqpTransferFW();
+    private final AmqpDispositionFW amqpDispositionRO = new AmqpDispositionFW();
     private final AmqpDetachFW amqpDetachRO = new AmqpDetachFW();
     private final AmqpEndFW amqpEndRO = new AmqpEndFW();
     private final AmqpCloseFW amqpCloseRO = new AmqpCloseFW();
@@ -262,9 +380,8 @@ public final class AmqpServerFactory implements StreamFactory
     private final AmqpApplicationPropertiesFW<AmqpSimpleTypeFW> applicationPropertiesRO =
         new AmqpApplicationPropertiesFW<>(new AmqpStringFW(), new AmqpSimpleTypeFW());
     private final AmqpMapFW<AmqpValueFW, AmqpValueFW> footerRO = new AmqpMapFW<>(new AmqpValueFW(), new AmqpValueFW());
+    private final AmqpMapFW<AmqpValueFW, AmqpValueFW> linkPropertiesRO = new AmqpMapFW<>(new AmqpValueFW(), new AmqpValueFW());
     private final AmqpSectionTypeFW amqpSectionTypeRO = new AmqpSectionTypeFW();
-    private final AmqpValueFW amqpValueRO = new AmqpValueFW();
-    private final AmqpSimpleTypeFW amqpSimpleTypeRO = new AmqpSimpleTypeFW();
 
     private final AmqpFrameHeaderFW.Builder amqpFrameHeaderRW = new AmqpFrameHeaderFW.Builder();
     private final AmqpSaslFrameHeaderFW.Builder amqpSaslFrameHeaderRW = new AmqpSaslFrameHeaderFW.Builder();
@@ -279,14 +396,14 @@ public final class AmqpServerFactory implements StreamFactory
     private final AmqpErrorListFW.Builder amqpErrorListRW = new AmqpErrorListFW.Builder();
     private final AmqpStringFW.Builder amqpStringRW = new AmqpStringFW.Builder();
     private final AmqpSimpleTypeFW.Builder amqpValueRW = new AmqpSimpleTypeFW.Builder();
-    private final AmqpSymbolFW.Builder amqpSymbolRW = new AmqpSymbolFW.Builder();
     private final AmqpSourceListFW.Builder amqpSourceListRW = new AmqpSourceListFW.Builder();
     private final AmqpTargetListFW.Builder amqpTargetListRW = new AmqpTargetListFW.Builder();
-    private final AmqpBinaryFW.Builder amqpBinaryRW = new AmqpBinaryFW.Builder();
-    private final AmqpULongFW.Builder amqpULongRW = new AmqpULongFW.Builder();
+    private final AmqpCoordinatorFW.Builder amqpCoordinatorRW = new AmqpCoordinatorFW.Builder();
     private final AmqpVariableLength8FW.Builder amqpVariableLength8RW = new AmqpVariableLength8FW.Builder();
     private final AmqpVariableLength32FW.Builder amqpVariableLength32RW = new AmqpVariableLength32FW.Builder();
-    private final AmqpMessagePropertiesFW.Builder amqpPropertiesRW = new AmqpMessagePropertiesFW.Builder();
+    private final AmqpMapFW.Builder<AmqpBinaryFW, AmqpDeliveryStateFW, AmqpBinaryFW.Builder, AmqpDeliveryStateFW.Builder>
+        unsettledRW = new AmqpMapFW.Builder<>(new AmqpBinaryFW(), new AmqpDeliveryStateFW(), new AmqpBinaryFW.Builder(),
+            new AmqpDeliveryStateFW.Builder());
     private final Array32FW.Builder<AmqpAnnotationFW.Builder, AmqpAnnotationFW> annotationRW =
         new Array32FW.Builder<>(new AmqpAnnotationFW.Builder(), new AmqpAnnotationFW());
     private final AmqpPropertiesFW.Builder propertyRW = new AmqpPropertiesFW.Builder();
@@ -324,6 +441,11 @@ public final class AmqpServerFactory implements StreamFactory
         .set(TRANSFER)
         .build();
 
+    private final AmqpPerformativeTypeFW dispositionType = new AmqpPerformativeTypeFW.Builder()
+        .wrap(new UnsafeBuffer(new byte[3]), 0, 3)
+        .set(DISPOSITION)
+        .build();
+
     private final AmqpPerformativeTypeFW detachType = new AmqpPerformativeTypeFW.Builder()
         .wrap(new UnsafeBuffer(new byte[3]), 0, 3)
         .set(DETACH)
@@ -393,6 +515,21 @@ public final class AmqpServerFactory implements StreamFactory
     private final OctetsFW emptyFrameHeader = new OctetsFW()
         .wrap(new UnsafeBuffer(new byte[] {0x00, 0x00, 0x00, 0x08, 0x02, 0x00, 0x00, 0x00}), 0, 8);
 
+    private final OctetsFW acceptedState = new OctetsFW()
+        .wrap(new UnsafeBuffer(new byte[] {0x00, 0x53, 0x24, 0x45}), 0, 4);
+
+    private final AmqpListFW acceptedList = new AmqpListFW()
+        .wrap(new UnsafeBuffer(new byte[] {0x45}), 0, 1);
+
+    private final OctetsFW releasedState = new OctetsFW()
+        .wrap(new UnsafeBuffer(new byte[] {0x00, 0x53, 0x26, 0x45}), 0, 4);
+
+    private final OctetsFW rejectedState = new OctetsFW()
+        .wrap(new UnsafeBuffer(new byte[] {0x00, 0x53, 0x25, 0x45}), 0, 4);
+
+    private final MutableDirectBuffer declaredBuffer =
+        new UnsafeBuffer(new byte[] {0x00, 0x53, 0x33, (byte) 0xc0, 0x07, 0x01, (byte) 0xa0, 0x04, 0x00, 0x00, 0x00, 0x00});
+
     private final StringFW timeoutDescription = new String8FW("idle-timeout expired");
     private final StringFW timeoutTooSmallDescription = new String8FW("idle-timeout is too small");
     private final StringFW anonymous = new String8FW("ANONYMOUS");
@@ -400,10 +537,27 @@ public final class AmqpServerFactory implements StreamFactory
     private final AmqpMessageEncoder amqpMessageHelper = new AmqpMessageEncoder();
     private final AmqpMessageDecoder amqpMessageDecodeHelper = new AmqpMessageDecoder();
 
-    private final MutableInteger minimum = new MutableInteger(Integer.MAX_VALUE);
     private final MutableInteger maximum = new MutableInteger(0);
+    private final MutableInteger priority = new MutableInteger(DEFAULT_PRIORITY);
+    private final Consumer<AmqpAnnotationFW> decodePriorityAnnotation = this::decodePriorityAnnotation;
+    private final MutableInteger linkWeight = new MutableInteger(0);
+    private final BiConsumer<AmqpValueFW, AmqpValueFW> decodeLinkWeightProperty = this::decodeLinkWeightProperty;
+    private final MutableInteger unsettledTagSize = new MutableInteger(0);
+    private final Consumer<AmqpBinaryFW.Builder> encodeUnsettledTag = this::encodeUnsettledTag;
+    private final Consumer<AmqpDeliveryStateFW.Builder> encodeAcceptedState = this::encodeAcceptedState;
 
     private final Signaler signaler;
+    private final AmqpTimerWheel idleTimers;
+    private final IntConsumer onIdleTimerTick = this::onIdleTimerTick;
+    private long idleTimerTickId = NO_CANCEL_ID;
+
+    private final Deque<AmqpServer> overloadedServers;
+    private final IntConsumer onOverloadResume = this::onOverloadResume;
+    private long overloadResumeId = NO_CANCEL_ID;
+    private long overloadResumeAt;
+    private final LongSupplier overloads;
+
+    private final AmqpRecoveryStore recoveries;
 
     private final RouteManager router;
     private final MutableDirectBuffer writeBuffer;
@@ -411,6 +565,8 @@ public final class AmqpServerFactory implements StreamFactory
     private final MutableDirectBuffer extraBuffer;
     private final MutableDirectBuffer valueBuffer;
     private final MutableDirectBuffer stringBuffer;
+    private final MutableDirectBuffer tagBuffer;
+    private final MutableDirectBuffer generatedTagBuffer;
     private final LongUnaryOperator supplyInitialId;
     private final LongUnaryOperator supplyReplyId;
     private final LongSupplier supplyTraceId;
@@ -434,6 +590,8 @@ public final class AmqpServerFactory implements StreamFactory
     private final AmqpServerDecoder decodeAttach = this::decodeAttach;
     private final AmqpServerDecoder decodeFlow = this::decodeFlow;
     private final AmqpServerDecoder decodeTransfer = this::decodeTransfer;
+    private final AmqpServerDecoder decodeTransferBody = this::decodeTransferBody;
+    private final AmqpServerDecoder decodeDisposition = this::decodeDisposition;
     private final AmqpServerDecoder decodeDetach = this::decodeDetach;
     private final AmqpServerDecoder decodeEnd = this::decodeEnd;
     private final AmqpServerDecoder decodeClose = this::decodeClose;
@@ -450,6 +608,30 @@ public final class AmqpServerFactory implements StreamFactory
     private final long defaultHandleMax;
     private final long defaultIdleTimeout;
     private final StringFW[] defaultIncomingLocales;
+    private final Set<String> relayBareAddresses;
+    private final boolean linkCreditAutotune;
+    private final int linkCreditMin;
+    private final int linkCreditMax;
+    private final boolean linkScheduling;
+    private final int defaultLinkWeight;
+    private final boolean linkPrioritization;
+    private final boolean partialTransfers;
+    private final long drainTimeout;
+    private final int networkWindowThreshold;
+    private final boolean flowCoalescing;
+    private final int flowCreditThreshold;
+    private final int dispositionBatchSize;
+    private final long settleTimeout;
+    private final int recoveryLinks;
+    private final int recoveryDeliveries;
+    private final AmqpRedeliveryBackoff redeliveryBackoff;
+    private final StringFW deadLetterAddress;
+    private final int dedupDeliveries;
+
+    private final OctetsFW openFrame;
+    private final OctetsFW beginFrame;
+    private final int beginRemoteChannelOffset;
+    private final OctetsFW saslMechanismsFrame;
 
     private final Map<AmqpPerformativeType, AmqpServerDecoder> decodersByPerformativeType;
     {
@@ -459,7 +641,7 @@ public final class AmqpServerFactory implements StreamFactory
         decodersByPerformativeType.put(ATTACH, decodeAttach);
         decodersByPerformativeType.put(FLOW, decodeFlow);
         decodersByPerformativeType.put(TRANSFER, decodeTransfer);
-        // decodersByPerformative.put(AmqpDescribedType.DISPOSITION, decodeDisposition);
+        decodersByPerformativeType.put(DISPOSITION, decodeDisposition);
         decodersByPerformativeType.put(DETACH, decodeDetach);
         decodersByPerformativeType.put(END, decodeEnd);
         decodersByPerformativeType.put(CLOSE, decodeClose);
@@ -489,6 +671,7 @@ public final class AmqpServerFactory implements StreamFactory
         LongSupplier supplyTraceId,
         ToIntFunction<String> supplyTypeId,
         LongFunction<BudgetDebitor> supplyDebitor,
+        Function<String, LongSupplier> supplyCounter,
         Signaler signaler)
     {
         this.router = requireNonNull(router);
@@ -496,6 +679,8 @@ public final class AmqpServerFactory implements StreamFactory
         this.frameBuffer = new UnsafeBuffer(new byte[writeBuffer.capacity()]);
         this.extraBuffer = new UnsafeBuffer(new byte[writeBuffer.capacity()]);
         this.stringBuffer = new UnsafeBuffer(new byte[writeBuffer.capacity()]);
+        this.tagBuffer = new UnsafeBuffer(new byte[AmqpUnsettledMap.MAX_TAG_SIZE]);
+        this.generatedTagBuffer = new UnsafeBuffer(new byte[Long.BYTES]);
         this.valueBuffer = new UnsafeBuffer(new byte[writeBuffer.capacity()]);
         this.bufferPool = bufferPool;
         this.creditor = creditor;
@@ -514,7 +699,38 @@ public final class AmqpServerFactory implements StreamFactory
         this.defaultIdleTimeout = config.idleTimeout();
         this.defaultIncomingLocales = asStringFWArray(config.incomingLocales());
         this.closeTimeout = config.closeExchangeTimeout();
+        this.relayBareAddresses = new HashSet<>(asList(config.relayBareAddresses()));
+        this.linkCreditAutotune = config.linkCreditAutotune();
+        this.linkCreditMin = config.linkCreditMin();
+        this.linkCreditMax = config.linkCreditMax();
+        this.linkScheduling = config.linkScheduling();
+        this.defaultLinkWeight = Math.max(Math.min(config.linkWeight(), MAX_LINK_WEIGHT), 1);
+        this.linkPrioritization = config.linkPrioritization();
+        this.partialTransfers = config.partialTransfers();
+        this.drainTimeout = config.drainTimeout();
+        this.networkWindowThreshold = (int) ((long) bufferPool.slotCapacity() *
+            Math.max(Math.min(config.networkWindowThreshold(), 100), 0) / 100);
+        this.flowCoalescing = config.flowCoalescing();
+        this.flowCreditThreshold = Math.max(Math.min(config.flowCreditThreshold(), 100), 0);
+        this.dispositionBatchSize = Math.max(config.dispositionBatchSize(), 1);
+        this.settleTimeout = config.settleTimeout();
+        this.recoveryLinks = config.recoveryLinks();
+        this.recoveryDeliveries = config.recoveryDeliveries();
+        this.redeliveryBackoff = config.redeliveryMax() > 0 ?
+            new AmqpRedeliveryBackoff(Math.max(config.redeliveryDelay(), config.idleTimerTick()),
+                Math.max(config.redeliveryDelayMax(), config.redeliveryDelay()), config.redeliveryMax()) : null;
+        final String deadLetterAddress = config.redeliveryDeadLetterAddress();
+        this.deadLetterAddress = deadLetterAddress != null ? new String8FW(deadLetterAddress) : null;
+        this.dedupDeliveries = config.dedupDeliveries();
         this.signaler = signaler;
+        this.idleTimers = new AmqpTimerWheel(config.idleTimerTick(), IDLE_TIMER_WHEEL_SIZE, IDLE_TIMER_INITIAL_CAPACITY);
+        this.overloadedServers = new ArrayDeque<>();
+        this.recoveries = recoveryLinks > 0 ? new AmqpRecoveryStore(recoveryLinks, config.recoveryTimeout()) : null;
+        this.overloads = supplyCounter.apply("overloads");
+        this.openFrame = encodeOpenFrame();
+        this.beginFrame = encodeBeginFrame();
+        this.beginRemoteChannelOffset = beginRemoteChannelOffset(beginFrame);
+        this.saslMechanismsFrame = encodeSaslMechanismsFrame(anonymous);
     }
 
     @Override
@@ -598,6 +814,118 @@ public final class AmqpServerFactory implements StreamFactory
         return router.resolve(routeId, authorization, filter, wrapRoute);
     }
 
+    private OctetsFW encodeOpenFrame()
+    {
+        final int performativeSize = openType.sizeof();
+        frameBuffer.putBytes(FRAME_HEADER_SIZE, openType.buffer(), 0, performativeSize);
+
+        final AmqpOpenFW.Builder builder =
+            amqpOpenRW.wrap(frameBuffer, FRAME_HEADER_SIZE + performativeSize, frameBuffer.capacity())
+                .containerId(containerId);
+
+        if (defaultMaxFrameSize != DEFAULT_VALUE_MAX_FRAME_SIZE)
+        {
+            builder.maxFrameSize(defaultMaxFrameSize);
+        }
+
+        if (defaultIdleTimeout != DEFAULT_IDLE_TIMEOUT)
+        {
+            builder.idleTimeOut(defaultIdleTimeout);
+        }
+
+        if (defaultIncomingLocales.length > 0 && !Arrays.equals(defaultIncomingLocales, DEFAULT_INCOMING_LOCALES))
+        {
+            Array8FW.Builder<AmqpIETFLanguageTagFW.Builder, AmqpIETFLanguageTagFW> incomingLocales =
+                    incomingLocalesRW.wrap(extraBuffer, 0, extraBuffer.capacity());
+            for (StringFW incomingLocale : defaultIncomingLocales)
+            {
+                incomingLocales.item(i -> i.set(incomingLocale));
+            }
+            builder.incomingLocales(incomingLocales.build());
+        }
+
+        final AmqpOpenFW open = builder.build();
+
+        final int size = FRAME_HEADER_SIZE + performativeSize + open.sizeof();
+
+        final AmqpFrameHeaderFW frameHeader = amqpFrameHeaderRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+            .size(size)
+            .doff(2)
+            .type(0)
+            .channel(0)
+            .build();
+
+        assert frameHeader.sizeof() == FRAME_HEADER_SIZE;
+
+        return copyFrame(frameBuffer, size);
+    }
+
+    private OctetsFW encodeBeginFrame()
+    {
+        final int performativeSize = beginType.sizeof();
+        frameBuffer.putBytes(FRAME_HEADER_SIZE, beginType.buffer(), 0, performativeSize);
+
+        final AmqpBeginFW.Builder builder =
+            amqpBeginRW.wrap(frameBuffer, FRAME_HEADER_SIZE + performativeSize, frameBuffer.capacity())
+                .remoteChannel(0)
+                .nextOutgoingId(INITIAL_NEXT_OUTGOING_ID)
+                .incomingWindow(bufferPool.slotCapacity())
+                .outgoingWindow(outgoingWindow);
+
+        if (defaultHandleMax != DEFAULT_VALUE_HANDLE_MAX)
+        {
+            builder.handleMax(defaultHandleMax);
+        }
+
+        final AmqpBeginFW begin = builder.build();
+
+        final int size = FRAME_HEADER_SIZE + performativeSize + begin.sizeof();
+
+        final AmqpFrameHeaderFW frameHeader = amqpFrameHeaderRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+            .size(size)
+            .doff(2)
+            .type(0)
+            .channel(0)
+            .build();
+
+        assert frameHeader.sizeof() == FRAME_HEADER_SIZE;
+
+        return copyFrame(frameBuffer, size);
+    }
+
+    private int beginRemoteChannelOffset(
+        OctetsFW beginFrame)
+    {
+        final DirectBuffer buffer = beginFrame.buffer();
+        final int listOffset = beginFrame.offset() + FRAME_HEADER_SIZE + beginType.sizeof();
+        final AmqpType listType = AmqpType.valueOf(buffer.getByte(listOffset) & 0xFF);
+        final int listHeaderSize = listType == AmqpType.LIST1 ? 3 : 9;
+
+        assert AmqpType.valueOf(buffer.getByte(listOffset + listHeaderSize) & 0xFF) == AmqpType.USHORT;
+
+        return listOffset + listHeaderSize + Byte.BYTES;
+    }
+
+    private OctetsFW encodeSaslMechanismsFrame(
+        StringFW mechanisms)
+    {
+        Array8FW<AmqpSymbolFW> annonymousRO = anonymousRW.wrap(extraBuffer, 0, extraBuffer.capacity())
+            .item(i -> i.set(mechanisms))
+            .build();
+
+        final AmqpSaslMechanismsFW saslMechanisms =
+            amqpSaslMechanismsRW.wrap(frameBuffer, FRAME_HEADER_SIZE + SASL_DESCRIPTOR_SIZE, frameBuffer.capacity())
+                .mechanisms(annonymousRO)
+                .build();
+
+        final AmqpSaslFrameHeaderFW saslFrameHeader = amqpSaslFrameHeaderRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+            .size(FRAME_HEADER_SIZE + SASL_DESCRIPTOR_SIZE + saslMechanisms.sizeof())
+            .security(b -> b.saslMechanisms(saslMechanisms))
+            .build();
+
+        return copyFrame(saslFrameHeader.buffer(), saslFrameHeader.sizeof());
+    }
+
     private void doBegin(
         MessageConsumer receiver,
         long routeId,
@@ -822,6 +1150,68 @@ public final class AmqpServerFactory implements StreamFactory
         return progress;
     }
 
+    private void doSignalIdleTimerTickIfNecessary()
+    {
+        if (idleTimerTickId == NO_CANCEL_ID && !idleTimers.isEmpty())
+        {
+            final long tickAt = currentTimeMillis() + idleTimers.tickMillis();
+            idleTimerTickId = signaler.signalAt(tickAt, IDLE_TIMER_SIGNAL_ID, onIdleTimerTick);
+        }
+    }
+
+    private void onIdleTimerTick(
+        int signalId)
+    {
+        assert signalId == IDLE_TIMER_SIGNAL_ID;
+
+        idleTimerTickId = NO_CANCEL_ID;
+        idleTimers.expire(currentTimeMillis());
+        doSignalIdleTimerTickIfNecessary();
+    }
+
+    private void releaseSlot(
+        int slot)
+    {
+        bufferPool.release(slot);
+        doSignalOverloadResumeIfNecessary(currentTimeMillis());
+    }
+
+    private void doSignalOverloadResumeIfNecessary(
+        long resumeAt)
+    {
+        if (!overloadedServers.isEmpty() &&
+            (overloadResumeId == NO_CANCEL_ID || resumeAt < overloadResumeAt))
+        {
+            if (overloadResumeId != NO_CANCEL_ID)
+            {
+                signaler.cancel(overloadResumeId);
+            }
+
+            overloadResumeAt = resumeAt;
+            overloadResumeId = signaler.signalAt(resumeAt, OVERLOAD_SIGNAL_ID, onOverloadResume);
+        }
+    }
+
+    private void onOverloadResume(
+        int signalId)
+    {
+        assert signalId == OVERLOAD_SIGNAL_ID;
+
+        overloadResumeId = NO_CANCEL_ID;
+
+        final long traceId = supplyTraceId.getAsLong();
+        for (int remaining = overloadedServers.size(); remaining > 0; remaining--)
+        {
+            final AmqpServer server = overloadedServers.pollFirst();
+            if (!server.resumeIfNecessary(traceId))
+            {
+                overloadedServers.addLast(server);
+            }
+        }
+
+        doSignalOverloadResumeIfNecessary(currentTimeMillis() + idleTimers.tickMillis());
+    }
+
     private int decodePerformative(
         AmqpServer server,
         final long traceId,
@@ -1143,22 +1533,38 @@ public final class AmqpServerFactory implements StreamFactory
                 AmqpServer.AmqpSession session = server.sessions.get(server.decodeChannel);
                 assert session != null; // TODO error if null
 
+                if (handle == session.coordinatorHandle)
+                {
+                    final int fragmentLimit = transfer.limit() + server.decodableBodyBytes - transfer.sizeof();
+                    assert fragmentLimit <= limit;
+
+                    session.remoteDeliveryId = deliveryId != NO_DELIVERY_ID ? deliveryId : session.remoteDeliveryId;
+                    session.onDecodeCoordinatorTransfer(traceId, authorization, transfer,
+                        buffer, transfer.limit(), fragmentLimit);
+                    progress = fragmentLimit;
+                    server.decoder = decodePlainFrame;
+                    break decode;
+                }
+
                 AmqpServer.AmqpSession.AmqpServerStream sender = session.links.get(handle);
                 assert sender != null; // TODO error if null
 
+                final long remoteDeliveryId = sender.fragmented ? session.remoteDeliveryId :
+                    sequenceNext(session.remoteDeliveryId);
+
                 if (!sender.fragmented)
                 {
                     assert deliveryId != NO_DELIVERY_ID; // TODO: error
-                    session.remoteDeliveryId = sequenceNext(session.remoteDeliveryId);
 
                     if (transfer.hasAborted() && transfer.aborted() == 1)
                     {
+                        session.remoteDeliveryId = remoteDeliveryId;
                         progress = limit;
                         server.decoder = decodePlainFrame;
                         break decode;
                     }
 
-                    if (deliveryId != session.remoteDeliveryId)
+                    if (deliveryId != remoteDeliveryId)
                     {
                         server.onDecodeError(traceId, authorization, INVALID_FIELD, null);
                         progress = limit;
@@ -1167,12 +1573,11 @@ public final class AmqpServerFactory implements StreamFactory
                     }
                 }
 
-                server.decodableBodyBytes -= transfer.sizeof();
                 final int fragmentOffset = transfer.limit();
-                final int fragmentSize = server.decodableBodyBytes;
+                final int fragmentSize = server.decodableBodyBytes - transfer.sizeof();
                 final int fragmentLimit = fragmentOffset + fragmentSize;
 
-                if (deliveryId != NO_DELIVERY_ID && deliveryId != session.remoteDeliveryId)
+                if (deliveryId != NO_DELIVERY_ID && deliveryId != remoteDeliveryId)
                 {
                     server.onDecodeError(traceId, authorization, INVALID_FIELD, null);
                     progress = fragmentLimit;
@@ -1182,27 +1587,256 @@ public final class AmqpServerFactory implements StreamFactory
 
                 assert fragmentLimit <= limit;
 
-                int reserved = fragmentSize + sender.initialPadding;
-                boolean canSend = reserved <= sender.initialBudget;
-
-                if (canSend && sender.debitorIndex != NO_DEBITOR_INDEX)
+                if (sender.onDecodeRecoveredTransfer(traceId, authorization, transfer, remoteDeliveryId))
                 {
-                    reserved = sender.debitor.claim(traceId, sender.debitorIndex, sender.initialId, reserved, reserved, 0);
+                    session.remoteDeliveryId = remoteDeliveryId;
+                    progress = fragmentLimit;
+                    server.decoder = decodePlainFrame;
+                    break decode;
                 }
 
-                if (canSend && reserved != 0)
+                final boolean aborted = transfer.hasAborted() && transfer.aborted() == 1;
+                final int partialMax = aborted ? 0 : sender.partialFragmentMax();
+                final int reserved = sender.claimFragment(traceId, fragmentSize, partialMax);
+
+                if (reserved != 0)
                 {
-                    server.onDecodeTransfer(traceId, authorization, transfer, reserved, buffer, fragmentOffset, fragmentLimit);
+                    final int partialLimit = fragmentOffset + Math.min(reserved - sender.initialPadding, fragmentSize);
+                    final boolean partial = partialLimit < fragmentLimit;
 
-                    server.decoder = decodePlainFrame;
-                    progress = fragmentLimit;
+                    session.remoteDeliveryId = remoteDeliveryId;
+                    server.decodableBodyBytes = fragmentSize;
+
+                    server.onDecodeTransfer(traceId, authorization, transfer, reserved, partial,
+                        buffer, fragmentOffset, partialLimit);
+
+                    if (partial)
+                    {
+                        server.decodeTransferHandle = handle;
+                        server.decodeTransferMore = transfer.hasMore() && transfer.more() == 1;
+                        server.decodableBodyBytes -= partialLimit - fragmentOffset;
+                        server.decoder = decodeTransferBody;
+                    }
+                    else
+                    {
+                        server.decoder = decodePlainFrame;
+                    }
+                    progress = partialLimit;
+                }
+            }
+        }
+
+        return progress;
+    }
+
+    private int decodeTransferBody(
+        AmqpServer server,
+        final long traceId,
+        final long authorization,
+        final long budgetId,
+        final DirectBuffer buffer,
+        final int offset,
+        final int limit)
+    {
+        final AmqpServer.AmqpSession session = server.sessions.get(server.decodeChannel);
+        final AmqpServer.AmqpSession.AmqpServerStream sender =
+            session != null ? session.links.get(server.decodeTransferHandle) : null;
+
+        int progress = offset;
+
+        if (sender == null)
+        {
+            server.decoder = decodeIgnoreFrameBody;
+        }
+        else
+        {
+            final int fragmentLimit = offset + server.decodableBodyBytes;
+            assert fragmentLimit <= limit;
+
+            while (progress < fragmentLimit)
+            {
+                final int fragmentSize = fragmentLimit - progress;
+                final int reserved = sender.claimFragment(traceId, fragmentSize, sender.partialFragmentMax());
+                if (reserved == 0)
+                {
+                    break;
                 }
+
+                final int partialLimit = progress + Math.min(reserved - sender.initialPadding, fragmentSize);
+                final boolean more = partialLimit < fragmentLimit || server.decodeTransferMore;
+
+                sender.onDecodeTransfer(traceId, authorization, reserved, null, sender.messageFormat,
+                    false, false, false, false, more, buffer, progress, partialLimit);
+
+                server.decodableBodyBytes -= partialLimit - progress;
+                progress = partialLimit;
+            }
+
+            if (progress == fragmentLimit)
+            {
+                server.decoder = decodePlainFrame;
             }
         }
 
         return progress;
     }
 
+    private int decodePriority(
+        OctetsFW extension)
+    {
+        final AmqpDataExFW dataEx = extension.get(amqpDataExRO::tryWrap);
+
+        priority.value = DEFAULT_PRIORITY;
+        if (dataEx != null)
+        {
+            dataEx.annotations().forEach(decodePriorityAnnotation);
+        }
+
+        return priority.value;
+    }
+
+    private int decodeLinkWeight(
+        AmqpAttachFW attach)
+    {
+        final Flyweight properties = attach.hasProperties() ? attach.properties() : null;
+        final AmqpMapFW<AmqpValueFW, AmqpValueFW> linkProperties = properties != null ?
+            linkPropertiesRO.tryWrap(properties.buffer(), properties.offset(), properties.limit()) : null;
+
+        linkWeight.value = defaultLinkWeight;
+        if (linkProperties != null)
+        {
+            linkProperties.forEach(decodeLinkWeightProperty);
+        }
+
+        return linkWeight.value;
+    }
+
+    private void decodeLinkWeightProperty(
+        AmqpValueFW key,
+        AmqpValueFW value)
+    {
+        switch (key.kind())
+        {
+        case SYMBOL1:
+        case SYMBOL4:
+            if (LINK_WEIGHT_PROPERTY.equals(key.getAsAmqpSymbol().get().asString()))
+            {
+                linkWeight.value = decodeLinkWeightValue(value, linkWeight.value);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private static int decodeLinkWeightValue(
+        AmqpValueFW value,
+        int defaultWeight)
+    {
+        long weight;
+        switch (value.kind())
+        {
+        case UINT4:
+        case UINT1:
+        case UINT0:
+            weight = value.getAsAmqpUInt().get();
+            break;
+        case ULONG8:
+        case ULONG1:
+        case ULONG0:
+            weight = value.getAsAmqpULong().get();
+            break;
+        case INT4:
+        case INT1:
+            weight = value.getAsAmqpInt().get();
+            break;
+        default:
+            weight = defaultWeight;
+            break;
+        }
+        return (int) Math.max(Math.min(weight, MAX_LINK_WEIGHT), 1);
+    }
+
+    private int decodeHeaderPriority(
+        OctetsFW payload)
+    {
+        int priority = DEFAULT_PRIORITY;
+
+        if (payload != null)
+        {
+            final DirectBuffer buffer = payload.buffer();
+            final AmqpSectionTypeFW sectionType = amqpSectionTypeRO.tryWrap(buffer, payload.offset(), payload.limit());
+            if (sectionType != null && sectionType.get() == AmqpSectionType.HEADER)
+            {
+                final AmqpHeaderFW header = headersRO.tryWrap(buffer, sectionType.limit(), payload.limit());
+                if (header != null && header.hasPriority())
+                {
+                    priority = Math.min(header.priority(), MAX_PRIORITY);
+                }
+            }
+        }
+
+        return priority;
+    }
+
+    private void encodeUnsettledTag(
+        AmqpBinaryFW.Builder tag)
+    {
+        tag.set(tagBuffer, 0, unsettledTagSize.value);
+    }
+
+    private void encodeAcceptedState(
+        AmqpDeliveryStateFW.Builder state)
+    {
+        state.accepted(acceptedList);
+    }
+
+    private void decodePriorityAnnotation(
+        AmqpAnnotationFW annotation)
+    {
+        final AmqpAnnotationKeyFW key = annotation.key();
+        final OctetsFW value = annotation.value().bytes();
+
+        if (key.kind() == KIND_NAME && isPriorityAnnotation(key.name()) && value.sizeof() == 2)
+        {
+            final DirectBuffer buffer = value.buffer();
+            final int offset = value.offset();
+
+            switch (buffer.getByte(offset) & 0xff)
+            {
+            case 0x50: // ubyte
+            case 0x51: // byte
+            case 0x52: // smalluint
+            case 0x53: // smallulong
+            case 0x54: // smallint
+            case 0x55: // smalllong
+                priority.value = Math.max(Math.min(buffer.getByte(offset + 1), MAX_PRIORITY), 0);
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private static boolean isPriorityAnnotation(
+        StringFW name)
+    {
+        final int length = name.length();
+
+        boolean matches = length == PRIORITY_ANNOTATION.length;
+        if (matches)
+        {
+            final DirectBuffer buffer = name.buffer();
+            final int offset = name.offset() + name.sizeof() - length;
+            for (int index = 0; matches && index < length; index++)
+            {
+                matches = buffer.getByte(offset + index) == PRIORITY_ANNOTATION[index];
+            }
+        }
+
+        return matches;
+    }
+
     private void decodeError(
         AmqpServer server,
         final long traceId,
@@ -1212,6 +1846,35 @@ public final class AmqpServerFactory implements StreamFactory
         server.decoder = decodeIgnoreAll;
     }
 
+    private int decodeDisposition(
+        AmqpServer server,
+        final long traceId,
+        final long authorization,
+        final long budgetId,
+        final DirectBuffer buffer,
+        final int offset,
+        final int limit)
+    {
+        final AmqpDispositionFW disposition = amqpDispositionRO.tryWrap(buffer, offset, limit);
+
+        int progress = offset;
+        int length = limit - offset;
+
+        if (disposition != null)
+        {
+            server.onDecodeDisposition(traceId, authorization, disposition);
+            progress = disposition.limit();
+        }
+        else if (length >= server.decodableBodyBytes)
+        {
+            server.onDecodeError(traceId, authorization, INVALID_FIELD, null);
+            progress = limit;
+        }
+        server.decoder = decodePlainFrame;
+
+        return progress;
+    }
+
     private int decodeDetach(
         AmqpServer server,
         final long traceId,
@@ -1403,41 +2066,54 @@ public final class AmqpServerFactory implements StreamFactory
         private final long replyId;
         private final long affinity;
         private final long budgetId;
-        private final long replySharedBudgetId;
 
         private final Int2ObjectHashMap<AmqpSession> sessions;
+        private final AmqpMinimumTracker remoteIncomingWindows;
+        private final Deque<AmqpSession> pendingSessions;
+        private final Int2ObjectHashMap<AmqpTransaction> transactions;
+        private final Int2ObjectHashMap<AmqpSession.AmqpServerStream> encodeQueues;
+        private final AmqpDeficitRoundRobin encodeScheduler;
 
         private int initialBudget;
+        private int initialCredit;
         private int replyBudget;
         private int replyPadding;
 
-        private long replyBudgetIndex = NO_CREDITOR_INDEX;
         private int replySharedBudget;
+        private int replySessionBudget;
         private int replyBudgetReserved;
 
         private int decodeSlot = NO_SLOT;
         private int decodeSlotOffset;
         private int decodeSlotReserved;
+        private MutableDirectBuffer decodeOverload;
 
         private int encodeSlot = NO_SLOT;
         private int encodeSlotOffset;
         private long encodeSlotTraceId;
         private int encodeSlotMaxLimit = Integer.MAX_VALUE;
+        private int encodeQueueBytes;
+        private MutableDirectBuffer encodeOverload;
+        private boolean overloaded;
 
         private int decodeChannel;
         private int outgoingChannel;
         private int decodableBodyBytes;
+        private long decodeTransferHandle;
+        private boolean decodeTransferMore;
         private long decodeHandleMax;
         private long decodeMaxFrameSize = MIN_MAX_FRAME_SIZE;
         private int encodeMaxFrameSize = MIN_MAX_FRAME_SIZE;
         private long writeIdleTimeout = DEFAULT_IDLE_TIMEOUT;
+        private String remoteContainerId;
+        private long authorization;
+        private int nextTransactionId;
         private long readIdleTimeout = DEFAULT_IDLE_TIMEOUT;
 
-        private long readIdleTimeoutId = NO_CANCEL_ID;
-        private long readIdleTimeoutAt;
-
-        private long writeIdleTimeoutId = NO_CANCEL_ID;
-        private long writeIdleTimeoutAt;
+        private final LongConsumer onReadIdleTimeout = this::onReadIdleTimeout;
+        private final LongConsumer onWriteIdleTimeout = this::onWriteIdleTimeout;
+        private int readIdleTimerId = NO_TIMER;
+        private int writeIdleTimerId = NO_TIMER;
 
         private long closeTimeoutId = NO_CANCEL_ID;
 
@@ -1460,9 +2136,14 @@ public final class AmqpServerFactory implements StreamFactory
             this.replyId = supplyReplyId.applyAsLong(initialId);
             this.budgetId = supplyBudgetId.getAsLong();
             this.affinity = affinity;
-            this.replySharedBudgetId = budgetId;
             this.decoder = decodeProtocolHeader;
             this.sessions = new Int2ObjectHashMap<>();
+            this.remoteIncomingWindows = new AmqpMinimumTracker(INITIAL_SESSIONS_CAPACITY);
+            this.pendingSessions = new ArrayDeque<>();
+            this.transactions = new Int2ObjectHashMap<>();
+            this.encodeQueues = linkScheduling ? new Int2ObjectHashMap<>() : null;
+            this.encodeScheduler = linkScheduling ?
+                new AmqpDeficitRoundRobin(this::drainEncodeQueue, this::sizeofEncodeQueue, INITIAL_LINKS_CAPACITY) : null;
             this.hasSaslOutcome = false;
             this.decodeMaxFrameSize = defaultMaxFrameSize;
             this.decodeHandleMax = defaultHandleMax;
@@ -1495,30 +2176,15 @@ public final class AmqpServerFactory implements StreamFactory
         {
             replyBudgetReserved += saslProtocolHeader.sizeof() + replyPadding;
             doNetworkData(traceId, authorization, 0L, saslProtocolHeader);
-            doEncodeSaslMechanisms(traceId, authorization, anonymous);
+            doEncodeSaslMechanisms(traceId, authorization);
         }
 
         private void doEncodeSaslMechanisms(
             long traceId,
-            long authorization,
-            StringFW mechanisms)
+            long authorization)
         {
-            Array8FW<AmqpSymbolFW> annonymousRO = anonymousRW.wrap(extraBuffer, 0, extraBuffer.capacity())
-                .item(i -> i.set(mechanisms))
-                .build();
-
-            final AmqpSaslMechanismsFW saslMechanisms =
-                amqpSaslMechanismsRW.wrap(frameBuffer, FRAME_HEADER_SIZE + SASL_DESCRIPTOR_SIZE, frameBuffer.capacity())
-                    .mechanisms(annonymousRO)
-                    .build();
-
-            final AmqpSaslFrameHeaderFW saslFrameHeader = amqpSaslFrameHeaderRW.wrap(frameBuffer, 0, frameBuffer.capacity())
-                .size(FRAME_HEADER_SIZE + SASL_DESCRIPTOR_SIZE + saslMechanisms.sizeof())
-                .security(b -> b.saslMechanisms(saslMechanisms))
-                .build();
-
-            replyBudgetReserved += saslFrameHeader.sizeof() + replyPadding;
-            doNetworkData(traceId, authorization, 0L, saslFrameHeader);
+            replyBudgetReserved += saslMechanismsFrame.sizeof() + replyPadding;
+            doNetworkData(traceId, authorization, 0L, saslMechanismsFrame);
         }
 
         private void doEncodeSaslOutcome(
@@ -1552,91 +2218,21 @@ public final class AmqpServerFactory implements StreamFactory
             long traceId,
             long authorization)
         {
-            final int performativeSize = openType.sizeof();
-            frameBuffer.putBytes(FRAME_HEADER_SIZE, openType.buffer(), 0, performativeSize);
-
-            final AmqpOpenFW.Builder builder =
-                amqpOpenRW.wrap(frameBuffer, FRAME_HEADER_SIZE + performativeSize, frameBuffer.capacity())
-                    .containerId(containerId);
-
-            if (decodeMaxFrameSize != DEFAULT_VALUE_MAX_FRAME_SIZE)
-            {
-                builder.maxFrameSize(decodeMaxFrameSize);
-            }
-
-            if (defaultIdleTimeout != DEFAULT_IDLE_TIMEOUT)
-            {
-                builder.idleTimeOut(defaultIdleTimeout);
-            }
-
-            if (defaultIncomingLocales.length > 0 && !Arrays.equals(defaultIncomingLocales, DEFAULT_INCOMING_LOCALES))
-            {
-                Array8FW.Builder<AmqpIETFLanguageTagFW.Builder, AmqpIETFLanguageTagFW> incomingLocales =
-                        incomingLocalesRW.wrap(extraBuffer, 0, extraBuffer.capacity());
-                for (StringFW incomingLocale : defaultIncomingLocales)
-                {
-                    incomingLocales.item(i -> i.set(incomingLocale));
-                }
-                builder.incomingLocales(incomingLocales.build());
-            }
-
-            final AmqpOpenFW open = builder.build();
-
-            final int size = FRAME_HEADER_SIZE + performativeSize + open.sizeof();
-
-            final AmqpFrameHeaderFW frameHeader = amqpFrameHeaderRW.wrap(frameBuffer, 0, frameBuffer.capacity())
-                .size(size)
-                .doff(2)
-                .type(0)
-                .channel(0)
-                .build();
-
-            assert frameHeader.sizeof() == FRAME_HEADER_SIZE;
-
-            final OctetsFW payload = payloadRO.wrap(frameBuffer, 0, size);
-
-            replyBudgetReserved += payload.sizeof() + replyPadding;
-            doNetworkData(traceId, authorization, 0L, payload);
-        }
+            replyBudgetReserved += openFrame.sizeof() + replyPadding;
+            doNetworkData(traceId, authorization, 0L, openFrame);
+        }
 
         private void doEncodeBegin(
             long traceId,
             long authorization,
-            int remoteChannel,
-            int nextOutgoingId)
+            int remoteChannel)
         {
-            final int performativeSize = beginType.sizeof();
-            frameBuffer.putBytes(FRAME_HEADER_SIZE, beginType.buffer(), 0, performativeSize);
-
-            final AmqpBeginFW.Builder builder =
-                amqpBeginRW.wrap(frameBuffer, FRAME_HEADER_SIZE + performativeSize, frameBuffer.capacity())
-                    .remoteChannel(remoteChannel)
-                    .nextOutgoingId(nextOutgoingId)
-                    .incomingWindow(bufferPool.slotCapacity())
-                    .outgoingWindow(outgoingWindow);
-
-            if (decodeHandleMax != DEFAULT_VALUE_HANDLE_MAX)
-            {
-                builder.handleMax(decodeHandleMax);
-            }
-
-            final AmqpBeginFW begin = builder.build();
-
-            final int size = FRAME_HEADER_SIZE + performativeSize + begin.sizeof();
-
-            final AmqpFrameHeaderFW frameHeader = amqpFrameHeaderRW.wrap(frameBuffer, 0, frameBuffer.capacity())
-                .size(size)
-                .doff(2)
-                .type(0)
-                .channel(outgoingChannel)
-                .build();
-
-            assert frameHeader.sizeof() == FRAME_HEADER_SIZE;
-
-            final OctetsFW payload = payloadRO.wrap(frameBuffer, 0, size);
+            final MutableDirectBuffer buffer = (MutableDirectBuffer) beginFrame.buffer();
+            buffer.putShort(beginFrame.offset() + FRAME_HEADER_CHANNEL_OFFSET, (short) outgoingChannel, BIG_ENDIAN);
+            buffer.putShort(beginRemoteChannelOffset, (short) remoteChannel, BIG_ENDIAN);
 
-            replyBudgetReserved += payload.sizeof() + replyPadding;
-            doNetworkData(traceId, authorization, 0L, payload);
+            replyBudgetReserved += beginFrame.sizeof() + replyPadding;
+            doNetworkData(traceId, authorization, 0L, beginFrame);
         }
 
         private void doEncodeAttach(
@@ -1651,7 +2247,8 @@ public final class AmqpServerFactory implements StreamFactory
             StringFW addressFrom,
             StringFW addressTo,
             long deliveryCount,
-            long maxMessageSize)
+            long maxMessageSize,
+            AmqpUnsettledMap unsettled)
         {
             final int performativeSize = attachType.sizeof();
             frameBuffer.putBytes(FRAME_HEADER_SIZE, attachType.buffer(), 0, performativeSize);
@@ -1684,6 +2281,7 @@ public final class AmqpServerFactory implements StreamFactory
                         .address(addressTo)
                         .build();
                     builder.target(b -> b.targetList(targetList));
+                    extraOffset = targetList.limit();
                 }
                 else
                 {
@@ -1691,6 +2289,42 @@ public final class AmqpServerFactory implements StreamFactory
                         .wrap(extraBuffer, extraOffset, extraBuffer.capacity())
                         .build();
                     builder.target(b -> b.targetList(targetList));
+                    extraOffset = targetList.limit();
+                }
+            }
+
+            if (unsettled != null && !unsettled.isEmpty())
+            {
+                // leave room in the frame for the remaining attach fields
+                final int unsettledLimit = Math.min(extraOffset + (encodeMaxFrameSize >> 1), extraBuffer.capacity());
+                unsettledRW.wrap(extraBuffer, extraOffset, unsettledLimit);
+
+                boolean incomplete = false;
+                for (long deliveryId = unsettled.first(); ; deliveryId = sequenceNext(deliveryId))
+                {
+                    if (unsettled.contains(deliveryId))
+                    {
+                        if (unsettledRW.limit() + UNSETTLED_ENTRY_MAX_SIZE > unsettledLimit)
+                        {
+                            incomplete = true;
+                            break;
+                        }
+
+                        unsettledTagSize.value = unsettled.tag(deliveryId, tagBuffer, 0);
+                        unsettledRW.entry(encodeUnsettledTag, encodeAcceptedState);
+                    }
+
+                    if (deliveryId == unsettled.last())
+                    {
+                        break;
+                    }
+                }
+
+                builder.unsettled(unsettledRW.build());
+
+                if (incomplete)
+                {
+                    builder.incompleteUnsettled(1);
                 }
             }
 
@@ -1723,6 +2357,47 @@ public final class AmqpServerFactory implements StreamFactory
             doNetworkData(traceId, authorization, 0L, payload);
         }
 
+        private void doEncodeCoordinatorAttach(
+            long traceId,
+            long authorization,
+            String name,
+            int channel,
+            long handle)
+        {
+            final int performativeSize = attachType.sizeof();
+            frameBuffer.putBytes(FRAME_HEADER_SIZE, attachType.buffer(), 0, performativeSize);
+
+            final AmqpCoordinatorFW coordinator = amqpCoordinatorRW
+                .wrap(extraBuffer, 0, extraBuffer.capacity())
+                .build();
+
+            final AmqpAttachFW attach =
+                amqpAttachRW.wrap(frameBuffer, FRAME_HEADER_SIZE + performativeSize, frameBuffer.capacity())
+                    .name(amqpStringRW.wrap(stringBuffer, 0, stringBuffer.capacity()).set(name, UTF_8).build().get())
+                    .handle(handle)
+                    .role(RECEIVER)
+                    .sndSettleMode(MIXED)
+                    .rcvSettleMode(FIRST)
+                    .target(b -> b.coordinatorList(coordinator))
+                    .build();
+
+            final int size = FRAME_HEADER_SIZE + performativeSize + attach.sizeof();
+
+            final AmqpFrameHeaderFW frameHeader = amqpFrameHeaderRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .size(size)
+                .doff(2)
+                .type(0)
+                .channel(channel)
+                .build();
+
+            assert frameHeader.sizeof() == FRAME_HEADER_SIZE;
+
+            final OctetsFW payload = payloadRO.wrap(frameBuffer, 0, size);
+
+            replyBudgetReserved += payload.sizeof() + replyPadding;
+            doNetworkData(traceId, authorization, 0L, payload);
+        }
+
         private void doEncodeFlow(
             long traceId,
             long authorization,
@@ -1732,7 +2407,9 @@ public final class AmqpServerFactory implements StreamFactory
             long incomingWindow,
             long handle,
             long deliveryCount,
-            int linkCredit)
+            int linkCredit,
+            boolean drain,
+            boolean echo)
         {
             final int performativeSize = flowType.sizeof();
             frameBuffer.putBytes(FRAME_HEADER_SIZE, flowType.buffer(), 0, performativeSize);
@@ -1749,6 +2426,16 @@ public final class AmqpServerFactory implements StreamFactory
                 builder.handle(handle)
                     .deliveryCount(deliveryCount)
                     .linkCredit(linkCredit);
+
+                if (drain)
+                {
+                    builder.drain(1);
+                }
+
+                if (echo)
+                {
+                    builder.echo(1);
+                }
             }
 
             final AmqpFlowFW flow = builder.build();
@@ -1770,19 +2457,66 @@ public final class AmqpServerFactory implements StreamFactory
             doNetworkData(traceId, authorization, 0L, payload);
         }
 
+        private void doEncodeDisposition(
+            long traceId,
+            long authorization,
+            int channel,
+            AmqpRole role,
+            long first,
+            long last,
+            boolean settled,
+            OctetsFW state)
+        {
+            final int performativeSize = dispositionType.sizeof();
+            frameBuffer.putBytes(FRAME_HEADER_SIZE, dispositionType.buffer(), 0, performativeSize);
+
+            final int listOffset = FRAME_HEADER_SIZE + performativeSize;
+
+            int progress = listOffset + DISPOSITION_LIST_HEADER_SIZE;
+            frameBuffer.putByte(progress++, (byte) role.value());
+            progress = amqpMessageHelper.encodeUInt(first, frameBuffer, progress);
+            progress = amqpMessageHelper.encodeUInt(last, frameBuffer, progress);
+            frameBuffer.putByte(progress++, (byte) (settled ? TRUE.value() : FALSE.value()));
+            frameBuffer.putBytes(progress, state.buffer(), state.offset(), state.sizeof());
+            progress += state.sizeof();
+
+            final int fieldCount = state.sizeof() > 0 ? DISPOSITION_FIELD_COUNT : DISPOSITION_FIELD_COUNT - 1;
+
+            frameBuffer.putByte(listOffset, (byte) LIST1.value());
+            frameBuffer.putByte(listOffset + 1, (byte) (progress - listOffset - Byte.BYTES - Byte.BYTES));
+            frameBuffer.putByte(listOffset + 2, (byte) fieldCount);
+
+            final int size = progress;
+
+            final AmqpFrameHeaderFW frameHeader = amqpFrameHeaderRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .size(size)
+                .doff(2)
+                .type(0)
+                .channel(channel)
+                .build();
+
+            assert frameHeader.sizeof() == FRAME_HEADER_SIZE;
+
+            final OctetsFW payload = payloadRO.wrap(frameBuffer, 0, size);
+
+            replyBudgetReserved += payload.sizeof() + replyPadding;
+            doNetworkData(traceId, authorization, 0L, payload);
+        }
+
         private void doEncodeTransfer(
             long traceId,
             long authorization,
             int channel,
             AmqpTransferFW transfer,
-            DirectBuffer buffer,
-            int offset,
+            OctetsFW messageHead,
+            OctetsFW messageBody,
+            int progress,
             int length)
         {
             final int performativeSize = transferType.sizeof();
             frameBuffer.putBytes(FRAME_HEADER_SIZE, transferType.buffer(), 0, performativeSize);
             frameBuffer.putBytes(FRAME_HEADER_SIZE + performativeSize, transfer.buffer(), transfer.offset(), transfer.sizeof());
-            frameBuffer.putBytes(FRAME_HEADER_SIZE + performativeSize + transfer.sizeof(), buffer, offset, length);
+            putMessageBytes(FRAME_HEADER_SIZE + performativeSize + transfer.sizeof(), messageHead, messageBody, progress, length);
 
             final int size = FRAME_HEADER_SIZE + performativeSize + transfer.sizeof() + length;
             assert size <= encodeMaxFrameSize;
@@ -1802,16 +2536,43 @@ public final class AmqpServerFactory implements StreamFactory
             doNetworkData(traceId, authorization, 0L, payload);
         }
 
+        private void putMessageBytes(
+            int frameOffset,
+            OctetsFW messageHead,
+            OctetsFW messageBody,
+            int progress,
+            int length)
+        {
+            final int headSize = messageHead.sizeof();
+
+            int headLength = 0;
+            if (progress < headSize)
+            {
+                headLength = Math.min(headSize - progress, length);
+                frameBuffer.putBytes(frameOffset, messageHead.buffer(), messageHead.offset() + progress, headLength);
+            }
+
+            final int bodyLength = length - headLength;
+            if (bodyLength > 0)
+            {
+                final int bodyProgress = Math.max(progress - headSize, 0);
+                assert bodyProgress + bodyLength <= messageBody.sizeof();
+                frameBuffer.putBytes(frameOffset + headLength, messageBody.buffer(), messageBody.offset() + bodyProgress,
+                    bodyLength);
+            }
+        }
+
         private void doEncodeTransferFragments(
             long traceId,
             long authorization,
             int channel,
             long handle,
             boolean more,
-            DirectBuffer fragmentBuffer,
-            int fragmentProgress,
-            int fragmentLimit)
+            OctetsFW messageHead,
+            OctetsFW messageBody,
+            int fragmentProgress)
         {
+            final int fragmentLimit = messageHead.sizeof() + messageBody.sizeof();
             int fragmentRemaining = fragmentLimit - fragmentProgress;
 
             final int performativeSize = transferType.sizeof();
@@ -1823,8 +2584,8 @@ public final class AmqpServerFactory implements StreamFactory
             int fragmentSizeCont = encodeMaxFrameSize - FRAME_HEADER_SIZE - performativeSize - transferCont.sizeof();
             while (fragmentRemaining > fragmentSizeCont)
             {
-                doEncodeTransfer(traceId, authorization, outgoingChannel, transferCont, fragmentBuffer, fragmentProgress,
-                    fragmentSizeCont);
+                doEncodeTransfer(traceId, authorization, outgoingChannel, transferCont, messageHead, messageBody,
+                    fragmentProgress, fragmentSizeCont);
                 fragmentProgress += fragmentSizeCont;
                 fragmentRemaining -= fragmentSizeCont;
             }
@@ -1843,7 +2604,8 @@ public final class AmqpServerFactory implements StreamFactory
             int fragmentSizeFin = encodeMaxFrameSize - FRAME_HEADER_SIZE - performativeSize - transferFin.sizeof();
             assert fragmentRemaining <= fragmentSizeFin;
 
-            doEncodeTransfer(traceId, authorization, channel, transferFin, fragmentBuffer, fragmentProgress, fragmentRemaining);
+            doEncodeTransfer(traceId, authorization, channel, transferFin, messageHead, messageBody, fragmentProgress,
+                fragmentRemaining);
             fragmentProgress += fragmentRemaining;
             assert fragmentProgress == fragmentLimit;
         }
@@ -2029,6 +2791,16 @@ public final class AmqpServerFactory implements StreamFactory
                 if (encodeSlot == NO_SLOT)
                 {
                     encodeSlot = bufferPool.acquire(replyId);
+
+                    if (encodeSlot == NO_SLOT)
+                    {
+                        encodeSlot = OVERLOAD_SLOT;
+                        if (encodeOverload == null)
+                        {
+                            encodeOverload = new ExpandableArrayBuffer(remaining);
+                        }
+                        doPauseNetworkIfNecessary();
+                    }
                 }
                 else
                 {
@@ -2036,16 +2808,9 @@ public final class AmqpServerFactory implements StreamFactory
                     assert encodeSlotMaxLimit >= 0;
                 }
 
-                if (encodeSlot == NO_SLOT)
-                {
-                    cleanupNetwork(traceId, authorization);
-                }
-                else
-                {
-                    final MutableDirectBuffer encodeBuffer = bufferPool.buffer(encodeSlot);
-                    encodeBuffer.putBytes(0, buffer, offset + length, remaining);
-                    encodeSlotOffset = remaining;
-                }
+                final MutableDirectBuffer encodeBuffer = encodeSlotBuffer();
+                encodeBuffer.putBytes(0, buffer, offset + length, remaining);
+                encodeSlotOffset = remaining;
             }
             else
             {
@@ -2104,6 +2869,7 @@ public final class AmqpServerFactory implements StreamFactory
             final long traceId = begin.traceId();
             final long authorization = begin.authorization();
 
+            this.authorization = authorization;
             state = AmqpState.openingInitial(state);
 
             doNetworkBegin(traceId, authorization);
@@ -2134,7 +2900,7 @@ public final class AmqpServerFactory implements StreamFactory
 
                 if (decodeSlot != NO_SLOT)
                 {
-                    final MutableDirectBuffer slotBuffer = bufferPool.buffer(decodeSlot);
+                    final MutableDirectBuffer slotBuffer = decodeSlotBuffer();
                     slotBuffer.putBytes(decodeSlotOffset, buffer, offset, limit - offset);
                     decodeSlotOffset += limit - offset;
                     decodeSlotReserved += reserved;
@@ -2146,6 +2912,8 @@ public final class AmqpServerFactory implements StreamFactory
                 }
 
                 decodeNetwork(traceId, authorization, budgetId, reserved, buffer, offset, limit);
+
+                doNetworkWindowIfNecessary(traceId, authorization, reserved - decodeSlotReserved);
             }
         }
 
@@ -2155,6 +2923,7 @@ public final class AmqpServerFactory implements StreamFactory
             final long authorization = end.authorization();
 
             state = AmqpState.closeInitial(state);
+            doCancelReadIdleTimeoutIfNecessary();
 
             if (decodeSlot == NO_SLOT)
             {
@@ -2176,6 +2945,7 @@ public final class AmqpServerFactory implements StreamFactory
             cleanupStreams(traceId, authorization);
             cleanupBudgetCreditorIfNecessary();
             cleanupEncodeSlotIfNecessary();
+            doCancelReadIdleTimeoutIfNecessary();
 
             doNetworkAbort(traceId, authorization);
         }
@@ -2202,13 +2972,14 @@ public final class AmqpServerFactory implements StreamFactory
 
             if (encodeSlot != NO_SLOT)
             {
-                final MutableDirectBuffer buffer = bufferPool.buffer(encodeSlot);
+                final MutableDirectBuffer buffer = encodeSlotBuffer();
                 final int limit = Math.min(encodeSlotOffset, encodeSlotMaxLimit);
                 final int maxLimit = encodeSlotOffset;
 
                 encodeNetwork(encodeSlotTraceId, authorization, budgetId, buffer, 0, limit, maxLimit);
             }
 
+            flushEncodeQueues();
             flushReplySharedBudget(traceId);
         }
 
@@ -2216,28 +2987,120 @@ public final class AmqpServerFactory implements StreamFactory
             long traceId)
         {
             final int slotCapacity = bufferPool.slotCapacity();
-            minimum.value = Integer.MAX_VALUE;
-            sessions.values().forEach(s -> minimum.value = Math.min(s.remoteIncomingWindow, minimum.value));
-
-            final int replySharedBudgetMax = sessions.values().size() > 0 ?
-                Math.min(minimum.value * encodeMaxFrameSize, replyBudget) : replyBudget;
-            final int replySharedCredit = replySharedBudgetMax - Math.max(this.replySharedBudget, 0)
-                - Math.max(encodeSlotOffset, 0);
+            final int replySharedCredit = replyBudget - Math.max(this.replySharedBudget, 0)
+                - Math.max(encodeSlotOffset, 0) - encodeQueueBytes;
 
             if (replySharedCredit != 0 && replyBudgetReserved == 0)
             {
-                final long replySharedBudgetPrevious = creditor.credit(traceId, replyBudgetIndex, replySharedCredit);
-
                 this.replySharedBudget += replySharedCredit;
-                assert replySharedBudgetPrevious <= slotCapacity
-                    : String.format("%d <= %d, replyBudget = %d",
-                    replySharedBudgetPrevious, slotCapacity, replyBudget);
 
                 assert replySharedBudget <= slotCapacity
-                    : String.format("%d <= %d", replySharedBudget, slotCapacity);
+                    : String.format("%d <= %d, replyBudget = %d", replySharedBudget, slotCapacity, replyBudget);
+            }
+
+            flushSessionBudgets(traceId);
+        }
+
+        private void flushSessionBudgets(
+            long traceId)
+        {
+            final int sessionCount = sessions.size();
+
+            if (sessionCount > 0 && replySharedBudget > 0)
+            {
+                final int fairShare = replySharedBudget / sessionCount;
+
+                // only sessions waiting for credit are visited, each may take up to its share of what is unassigned
+                for (int remaining = pendingSessions.size();
+                     remaining > 0 && replySessionBudget < replySharedBudget;
+                     remaining--)
+                {
+                    final AmqpSession session = pendingSessions.pollFirst();
+                    final int available = replySharedBudget - replySessionBudget;
+                    final int sessionBudgetTarget = Math.max(fairShare, session.replySharedBudget + available / remaining);
+
+                    session.flushReplyBudget(traceId, sessionBudgetTarget);
+
+                    if (session.replyBudgetBlocked(fairShare))
+                    {
+                        pendingSessions.addLast(session);
+                    }
+                    else
+                    {
+                        session.replyBudgetPending = false;
+                    }
+                }
+            }
+        }
+
+        private void rebalanceSessionBudgets(
+            long traceId)
+        {
+            final int sessionCount = sessions.size();
+
+            if (sessionCount > 0 && replySharedBudget > 0)
+            {
+                final int fairShare = replySharedBudget / sessionCount;
+
+                int surplus = 0;
+                int unconstrained = sessionCount;
+                if ((long) remoteIncomingWindows.minimum() * encodeMaxFrameSize < fairShare)
+                {
+                    unconstrained = 0;
+                    for (AmqpSession session : sessions.values())
+                    {
+                        final int sessionBudgetMax = session.replyBudgetMax();
+                        if (sessionBudgetMax < fairShare)
+                        {
+                            surplus += fairShare - sessionBudgetMax;
+                        }
+                        else
+                        {
+                            unconstrained++;
+                        }
+                    }
+                }
+
+                final int sessionBudgetTarget = fairShare + (unconstrained > 0 ? surplus / unconstrained : 0);
+                if (replySessionBudget >= replySharedBudget)
+                {
+                    for (AmqpSession session : sessions.values())
+                    {
+                        session.reclaimReplyBudget(traceId, sessionBudgetTarget);
+                    }
+                }
+
+                if (replySessionBudget < replySharedBudget)
+                {
+                    for (AmqpSession session : sessions.values())
+                    {
+                        session.flushReplyBudget(traceId, sessionBudgetTarget);
+                    }
+                }
+            }
+        }
+
+        private void flushEncodeQueues()
+        {
+            if (encodeScheduler != null && encodeSlot == NO_SLOT && !AmqpState.replyClosed(state))
+            {
+                encodeScheduler.flush(encodeMaxFrameSize);
             }
         }
 
+        private int drainEncodeQueue(
+            int encodeQueueId,
+            int limit)
+        {
+            return encodeQueues.get(encodeQueueId).drainEncodeQueue(limit);
+        }
+
+        private int sizeofEncodeQueue(
+            int encodeQueueId)
+        {
+            return encodeQueues.get(encodeQueueId).sizeofEncodeQueue();
+        }
+
         private void onNetworkReset(
             ResetFW reset)
         {
@@ -2258,12 +3121,6 @@ public final class AmqpServerFactory implements StreamFactory
 
             switch (signalId)
             {
-            case READ_IDLE_SIGNAL_ID:
-                onReadIdleTimeoutSignal(signal);
-                break;
-            case WRITE_IDLE_SIGNAL_ID:
-                onWriteIdleTimeoutSignal(signal);
-                break;
             case CLOSE_SIGNAL_ID:
                 onCloseTimeoutSignal(signal);
                 break;
@@ -2272,40 +3129,25 @@ public final class AmqpServerFactory implements StreamFactory
             }
         }
 
-        private void onReadIdleTimeoutSignal(
-            SignalFW signal)
+        private void onReadIdleTimeout(
+            long now)
         {
-            final long traceId = signal.traceId();
-            final long authorization = signal.authorization();
+            final long traceId = supplyTraceId.getAsLong();
+            final long authorization = this.authorization;
 
-            final long now = currentTimeMillis();
-            if (now >= readIdleTimeoutAt)
-            {
-                onDecodeError(traceId, authorization, RESOURCE_LIMIT_EXCEEDED, timeoutDescription);
-                decoder = decodeIgnoreAll;
-            }
-            else
-            {
-                readIdleTimeoutId = signaler.signalAt(readIdleTimeoutAt, routeId, replyId, READ_IDLE_SIGNAL_ID);
-            }
+            readIdleTimerId = NO_TIMER;
+            onDecodeError(traceId, authorization, RESOURCE_LIMIT_EXCEEDED, timeoutDescription);
+            decoder = decodeIgnoreAll;
         }
 
-        private void onWriteIdleTimeoutSignal(
-            SignalFW signal)
+        private void onWriteIdleTimeout(
+            long now)
         {
-            final long traceId = signal.traceId();
-            final long authorization = signal.authorization();
+            final long traceId = supplyTraceId.getAsLong();
+            final long authorization = this.authorization;
 
-            final long now = currentTimeMillis();
-            if (now >= writeIdleTimeoutAt)
-            {
-                writeIdleTimeoutId = NO_CANCEL_ID;
-                doEncodeEmptyFrame(traceId, authorization);
-            }
-            else
-            {
-                writeIdleTimeoutId = signaler.signalAt(writeIdleTimeoutAt, routeId, replyId, WRITE_IDLE_SIGNAL_ID);
-            }
+            writeIdleTimerId = NO_TIMER;
+            doEncodeEmptyFrame(traceId, authorization);
         }
 
         private void onCloseTimeoutSignal(
@@ -2334,9 +3176,6 @@ public final class AmqpServerFactory implements StreamFactory
 
             doBegin(network, routeId, replyId, traceId, authorization, affinity, EMPTY_OCTETS);
             router.setThrottle(replyId, this::onNetwork);
-
-            assert replyBudgetIndex == NO_CREDITOR_INDEX;
-            this.replyBudgetIndex = creditor.acquire(replySharedBudgetId);
         }
 
         private void doNetworkData(
@@ -2352,7 +3191,7 @@ public final class AmqpServerFactory implements StreamFactory
 
             if (encodeSlot != NO_SLOT)
             {
-                final MutableDirectBuffer encodeBuffer = bufferPool.buffer(encodeSlot);
+                final MutableDirectBuffer encodeBuffer = encodeSlotBuffer();
                 encodeBuffer.putBytes(encodeSlotOffset, buffer, offset, limit - offset);
                 encodeSlotOffset += limit - offset;
                 encodeSlotTraceId = traceId;
@@ -2374,6 +3213,8 @@ public final class AmqpServerFactory implements StreamFactory
 
             cleanupBudgetCreditorIfNecessary();
             cleanupEncodeSlotIfNecessary();
+            cleanupOverloadIfNecessary();
+            doCancelWriteIdleTimeoutIfNecessary();
 
             doEnd(network, routeId, replyId, traceId, authorization, EMPTY_OCTETS);
         }
@@ -2386,6 +3227,8 @@ public final class AmqpServerFactory implements StreamFactory
 
             cleanupBudgetCreditorIfNecessary();
             cleanupEncodeSlotIfNecessary();
+            cleanupOverloadIfNecessary();
+            doCancelWriteIdleTimeoutIfNecessary();
 
             doAbort(network, routeId, replyId, traceId, authorization, EMPTY_OCTETS);
         }
@@ -2397,6 +3240,8 @@ public final class AmqpServerFactory implements StreamFactory
             state = AmqpState.closeInitial(state);
 
             cleanupDecodeSlotIfNecessary();
+            cleanupOverloadIfNecessary();
+            doCancelReadIdleTimeoutIfNecessary();
 
             doReset(network, routeId, initialId, traceId, authorization, EMPTY_OCTETS);
         }
@@ -2416,6 +3261,25 @@ public final class AmqpServerFactory implements StreamFactory
             doWindow(network, routeId, initialId, traceId, authorization, budgetId, credit, padding, 0);
         }
 
+        private void doNetworkWindowIfNecessary(
+            long traceId,
+            long authorization,
+            int credit)
+        {
+            initialCredit += credit;
+
+            // a partially decoded frame needs more credit to complete, otherwise hold until threshold
+            // while overloaded, hold all credit until buffer slots become available again
+            if (initialCredit > 0 && !overloaded &&
+                (decodeSlot != NO_SLOT || initialCredit >= networkWindowThreshold) &&
+                !AmqpState.initialClosed(state))
+            {
+                final int initialCredit = this.initialCredit;
+                this.initialCredit = 0;
+                doNetworkWindow(traceId, authorization, initialCredit, 0, 0L);
+            }
+        }
+
         private void decodeNetworkIfNecessary(
             long traceId)
         {
@@ -2424,18 +3288,14 @@ public final class AmqpServerFactory implements StreamFactory
                 final long authorization = 0L; // TODO
                 final long budgetId = 0L; // TODO
 
-                final DirectBuffer buffer = bufferPool.buffer(decodeSlot);
+                final DirectBuffer buffer = decodeSlotBuffer();
                 final int offset = 0;
                 final int limit = decodeSlotOffset;
                 final int reserved = decodeSlotReserved;
 
                 decodeNetwork(traceId, authorization, budgetId, reserved, buffer, offset, limit);
 
-                final int initialCredit = reserved - decodeSlotReserved;
-                if (initialCredit > 0)
-                {
-                    doNetworkWindow(traceId, authorization, initialCredit, 0, 0);
-                }
+                doNetworkWindowIfNecessary(traceId, authorization, reserved - decodeSlotReserved);
             }
         }
 
@@ -2461,19 +3321,22 @@ public final class AmqpServerFactory implements StreamFactory
                 if (decodeSlot == NO_SLOT)
                 {
                     decodeSlot = bufferPool.acquire(initialId);
-                }
 
-                if (decodeSlot == NO_SLOT)
-                {
-                    cleanupNetwork(traceId, authorization);
-                }
-                else
-                {
-                    final MutableDirectBuffer slotBuffer = bufferPool.buffer(decodeSlot);
-                    decodeSlotOffset = limit - progress;
-                    decodeSlotReserved = (int)((long) reserved * (limit - progress) / (limit - offset));
-                    slotBuffer.putBytes(0, buffer, progress, decodeSlotOffset);
+                    if (decodeSlot == NO_SLOT)
+                    {
+                        decodeSlot = OVERLOAD_SLOT;
+                        if (decodeOverload == null)
+                        {
+                            decodeOverload = new ExpandableArrayBuffer(limit - progress);
+                        }
+                        doPauseNetworkIfNecessary();
+                    }
                 }
+
+                final MutableDirectBuffer slotBuffer = decodeSlotBuffer();
+                decodeSlotOffset = limit - progress;
+                decodeSlotReserved = (int)((long) reserved * (limit - progress) / (limit - offset));
+                slotBuffer.putBytes(0, buffer, progress, decodeSlotOffset);
             }
             else
             {
@@ -2528,6 +3391,7 @@ public final class AmqpServerFactory implements StreamFactory
             // TODO: use buffer slot capacity instead
             this.encodeMaxFrameSize = (int) Math.min(replySharedBudget, open.maxFrameSize());
             this.writeIdleTimeout = open.hasIdleTimeOut() ? open.idleTimeOut() : DEFAULT_IDLE_TIMEOUT;
+            this.remoteContainerId = open.containerId().asString();
 
             if (writeIdleTimeout > 0)
             {
@@ -2566,6 +3430,10 @@ public final class AmqpServerFactory implements StreamFactory
                     session.remoteOutgoingWindow((int) begin.outgoingWindow());
                     session.onDecodeBegin(traceId, authorization);
                     this.outgoingChannel++;
+                    // a joining session changes the fair share, so rebalance every session once
+                    rebalanceSessionBudgets(traceId);
+                    session.doReplyBudgetPendingIfNecessary();
+                    flushReplySharedBudget(traceId);
                 }
             }
         }
@@ -2621,6 +3489,7 @@ public final class AmqpServerFactory implements StreamFactory
             long authorization,
             AmqpTransferFW transfer,
             int reserved,
+            boolean partial,
             DirectBuffer buffer,
             int offset,
             int limit)
@@ -2628,7 +3497,7 @@ public final class AmqpServerFactory implements StreamFactory
             AmqpSession session = sessions.get(decodeChannel);
             if (session != null)
             {
-                session.onDecodeTransfer(traceId, authorization, transfer, reserved, buffer, offset, limit);
+                session.onDecodeTransfer(traceId, authorization, transfer, reserved, partial, buffer, offset, limit);
             }
             else
             {
@@ -2636,7 +3505,23 @@ public final class AmqpServerFactory implements StreamFactory
             }
         }
 
-        private void onDecodeDetach(
+        private void onDecodeDisposition(
+            long traceId,
+            long authorization,
+            AmqpDispositionFW disposition)
+        {
+            AmqpSession session = sessions.get(decodeChannel);
+            if (session != null)
+            {
+                session.onDecodeDisposition(traceId, authorization, disposition);
+            }
+            else
+            {
+                onDecodeError(traceId, authorization, NOT_ALLOWED, null);
+            }
+        }
+
+        private void onDecodeDetach(
             long traceId,
             long authorization,
             AmqpDetachFW detach)
@@ -2646,10 +3531,11 @@ public final class AmqpServerFactory implements StreamFactory
             {
                 error = detach.error().errorList().condition();
             }
+            final boolean closed = detach.hasClosed() && detach.closed() == 1;
             AmqpSession session = sessions.get(decodeChannel);
             if (session != null)
             {
-                session.onDecodeDetach(traceId, authorization, error, detach.handle());
+                session.onDecodeDetach(traceId, authorization, error, detach.handle(), closed);
             }
         }
 
@@ -2682,6 +3568,7 @@ public final class AmqpServerFactory implements StreamFactory
             long authorization)
         {
             sessions.values().forEach(s -> s.cleanup(traceId, authorization));
+            cleanupTransactions();
             doEncodeCloseAndEndIfNecessary(traceId, authorization, null, null);
             doCancelCloseTimeoutIfNecessary();
         }
@@ -2711,21 +3598,198 @@ public final class AmqpServerFactory implements StreamFactory
             return PROTOCOL_HEADER_SASL == header.buffer().getLong(header.offset(), BIG_ENDIAN);
         }
 
-        private void cleanupNetwork(
+        private void cleanupStreams(
             long traceId,
             long authorization)
         {
-            cleanupStreams(traceId, authorization);
+            sessions.values().forEach(s -> s.cleanup(traceId, authorization));
+            cleanupTransactions();
+        }
 
-            doNetworkResetIfNecessary(traceId, authorization);
-            doNetworkAbortIfNecessary(traceId, authorization);
+        private void cleanupTransactions()
+        {
+            transactions.values().forEach(AmqpTransaction::cleanup);
+            transactions.clear();
         }
 
-        private void cleanupStreams(
+        private OctetsFW onDecodeDeclare()
+        {
+            final int transactionId = nextTransactionId++;
+            transactions.put(transactionId, new AmqpTransaction(transactionId));
+
+            declaredBuffer.putInt(DECLARED_TXN_ID_OFFSET, transactionId, BIG_ENDIAN);
+            return declaredStateRO.wrap(declaredBuffer, 0, declaredBuffer.capacity());
+        }
+
+        private OctetsFW onDecodeDischarge(
             long traceId,
-            long authorization)
+            long authorization,
+            AmqpDischargeListFW discharge)
         {
-            sessions.values().forEach(s -> s.cleanup(traceId, authorization));
+            final AmqpTransaction transaction = supplyTransaction(discharge.txnId());
+
+            OctetsFW state = rejectedState;
+            if (transaction != null)
+            {
+                final boolean fail = discharge.hasFail() && discharge.fail() == 1;
+                final boolean commit = !fail && !transaction.failed;
+
+                transactions.remove(transaction.transactionId);
+                final boolean committed = transaction.discharge(traceId, authorization, commit);
+
+                state = committed || fail ? acceptedState : rejectedState;
+            }
+
+            return state;
+        }
+
+        private AmqpTransaction supplyTransaction(
+            BoundedOctetsFW txnId)
+        {
+            final OctetsFW transactionId = txnId.get(deliveryTagRO::tryWrap);
+            return transactionId.sizeof() == Integer.BYTES ?
+                transactions.get(transactionId.buffer().getInt(transactionId.offset(), BIG_ENDIAN)) : null;
+        }
+
+        private AmqpTransaction supplyTransaction(
+            AmqpDeliveryStateFW state)
+        {
+            return state.kind() == TRANSACTIONAL_STATE ? supplyTransaction(state.transactionalState().txnId()) : null;
+        }
+
+        private final class AmqpTransaction
+        {
+            private final int transactionId;
+
+            private int slot = NO_SLOT;
+            private int slotLimit;
+            private boolean failed;
+
+            private AmqpTransaction(
+                int transactionId)
+            {
+                this.transactionId = transactionId;
+            }
+
+            private boolean doBufferTransfer(
+                long traceId,
+                long authorization,
+                int channel,
+                long handle,
+                long deliveryId,
+                int flags,
+                int reserved,
+                OctetsFW payload,
+                Flyweight extension)
+            {
+                final int extensionSize = extension.sizeof();
+                final int payloadSize = payload != null ? payload.sizeof() : 0;
+                final int recordSize = TRANSACTION_HEADER_SIZE + extensionSize + payloadSize;
+                final MutableDirectBuffer buffer = supplyRecord(recordSize);
+
+                if (buffer != null)
+                {
+                    final int offset = slotLimit;
+                    final int extensionOffset = offset + TRANSACTION_HEADER_SIZE;
+
+                    buffer.putInt(offset + TRANSACTION_SIZE_OFFSET, recordSize);
+                    buffer.putByte(offset + TRANSACTION_KIND_OFFSET, (byte) TRANSACTION_TRANSFER);
+                    buffer.putInt(offset + TRANSACTION_CHANNEL_OFFSET, channel);
+                    buffer.putLong(offset + TRANSACTION_HANDLE_OFFSET, handle);
+                    buffer.putLong(offset + TRANSACTION_FIRST_OFFSET, deliveryId);
+                    buffer.putLong(offset + TRANSACTION_LAST_OFFSET, deliveryId);
+                    buffer.putLong(offset + TRANSACTION_TRACE_ID_OFFSET, traceId);
+                    buffer.putLong(offset + TRANSACTION_AUTHORIZATION_OFFSET, authorization);
+                    buffer.putInt(offset + TRANSACTION_FLAGS_OFFSET, flags);
+                    buffer.putInt(offset + TRANSACTION_RESERVED_OFFSET, reserved);
+                    buffer.putInt(offset + TRANSACTION_EXTENSION_SIZE_OFFSET, extensionSize);
+                    buffer.putInt(offset + TRANSACTION_PAYLOAD_SIZE_OFFSET, payload != null ? payloadSize : -1);
+                    buffer.putBytes(extensionOffset, extension.buffer(), extension.offset(), extensionSize);
+                    if (payload != null)
+                    {
+                        buffer.putBytes(extensionOffset + extensionSize, payload.buffer(), payload.offset(), payloadSize);
+                    }
+
+                    slotLimit += recordSize;
+                }
+
+                return buffer != null;
+            }
+
+            private void doBufferDisposition(
+                int channel,
+                long first,
+                long last)
+            {
+                final MutableDirectBuffer buffer = supplyRecord(TRANSACTION_HEADER_SIZE);
+
+                if (buffer != null)
+                {
+                    final int offset = slotLimit;
+
+                    buffer.putInt(offset + TRANSACTION_SIZE_OFFSET, TRANSACTION_HEADER_SIZE);
+                    buffer.putByte(offset + TRANSACTION_KIND_OFFSET, (byte) TRANSACTION_DISPOSITION);
+                    buffer.putInt(offset + TRANSACTION_CHANNEL_OFFSET, channel);
+                    buffer.putLong(offset + TRANSACTION_HANDLE_OFFSET, NO_HANDLE);
+                    buffer.putLong(offset + TRANSACTION_FIRST_OFFSET, first);
+                    buffer.putLong(offset + TRANSACTION_LAST_OFFSET, last);
+                    buffer.putInt(offset + TRANSACTION_EXTENSION_SIZE_OFFSET, 0);
+                    buffer.putInt(offset + TRANSACTION_PAYLOAD_SIZE_OFFSET, -1);
+
+                    slotLimit += TRANSACTION_HEADER_SIZE;
+                }
+            }
+
+            private MutableDirectBuffer supplyRecord(
+                int recordSize)
+            {
+                if (!failed && slot == NO_SLOT)
+                {
+                    slot = bufferPool.acquire(initialId);
+                    failed = slot == NO_SLOT;
+                }
+
+                if (!failed && slotLimit + recordSize > bufferPool.slotCapacity())
+                {
+                    failed = true;
+                }
+
+                return failed ? null : bufferPool.buffer(slot);
+            }
+
+            private boolean discharge(
+                long traceId,
+                long authorization,
+                boolean commit)
+            {
+                boolean committed = commit;
+
+                if (slot != NO_SLOT)
+                {
+                    final MutableDirectBuffer buffer = bufferPool.buffer(slot);
+
+                    for (int offset = 0; offset < slotLimit; offset += buffer.getInt(offset + TRANSACTION_SIZE_OFFSET))
+                    {
+                        final AmqpSession session = sessions.get(buffer.getInt(offset + TRANSACTION_CHANNEL_OFFSET));
+                        committed &= session != null && session.onTransactionRecord(traceId, authorization, buffer, offset,
+                            committed);
+                    }
+                }
+
+                cleanup();
+
+                return committed;
+            }
+
+            private void cleanup()
+            {
+                if (slot != NO_SLOT)
+                {
+                    releaseSlot(slot);
+                    slot = NO_SLOT;
+                }
+                slotLimit = 0;
+            }
         }
 
         private void doEncodeCloseAndEndIfNecessary(
@@ -2752,88 +3816,187 @@ public final class AmqpServerFactory implements StreamFactory
             }
         }
 
-        private void doNetworkResetIfNecessary(
-                long traceId,
-                long authorization)
+        private void doCancelCloseTimeoutIfNecessary()
         {
-            if (!AmqpState.initialClosed(state))
+            if (closeTimeoutId != NO_CANCEL_ID)
             {
-                doNetworkReset(traceId, authorization);
+                signaler.cancel(closeTimeoutId);
+                closeTimeoutId = NO_CANCEL_ID;
             }
         }
 
-        private void doNetworkAbortIfNecessary(
-                long traceId,
-                long authorization)
+        private void cleanupBudgetCreditorIfNecessary()
         {
-            if (!AmqpState.replyClosed(state))
+            for (AmqpSession session : sessions.values())
             {
-                doNetworkAbort(traceId, authorization);
+                session.cleanupBudgetCreditorIfNecessary();
+                session.replyBudgetPending = false;
             }
+            pendingSessions.clear();
         }
 
-        private void doCancelCloseTimeoutIfNecessary()
+        private void cleanupDecodeSlotIfNecessary()
         {
-            if (closeTimeoutId != NO_CANCEL_ID)
+            if (decodeSlot == OVERLOAD_SLOT)
             {
-                signaler.cancel(closeTimeoutId);
-                closeTimeoutId = NO_CANCEL_ID;
+                doSignalOverloadResumeIfNecessary(currentTimeMillis());
+            }
+            else if (decodeSlot != NO_SLOT)
+            {
+                releaseSlot(decodeSlot);
             }
+
+            decodeSlot = NO_SLOT;
+            decodeSlotOffset = 0;
+            decodeSlotReserved = 0;
         }
 
-        private void cleanupBudgetCreditorIfNecessary()
+        private void cleanupEncodeSlotIfNecessary()
         {
-            if (replyBudgetIndex != NO_CREDITOR_INDEX)
+            if (encodeSlot == OVERLOAD_SLOT)
             {
-                creditor.release(replyBudgetIndex);
-                replyBudgetIndex = NO_CREDITOR_INDEX;
+                doSignalOverloadResumeIfNecessary(currentTimeMillis());
             }
+            else if (encodeSlot != NO_SLOT)
+            {
+                releaseSlot(encodeSlot);
+            }
+
+            encodeSlot = NO_SLOT;
+            encodeSlotOffset = 0;
+            encodeSlotTraceId = 0;
         }
 
-        private void cleanupDecodeSlotIfNecessary()
+        private void cleanupOverloadIfNecessary()
         {
-            if (decodeSlot != NO_SLOT)
+            // once the network stream is closed in both directions it no longer waits on buffer slots
+            if (AmqpState.closed(state))
             {
-                bufferPool.release(decodeSlot);
-                decodeSlot = NO_SLOT;
-                decodeSlotOffset = 0;
+                if (overloaded)
+                {
+                    overloaded = false;
+                    overloadedServers.remove(this);
+                }
+
+                if (decodeSlot != OVERLOAD_SLOT)
+                {
+                    decodeOverload = null;
+                }
+
+                if (encodeSlot != OVERLOAD_SLOT)
+                {
+                    encodeOverload = null;
+                }
             }
         }
 
-        private void cleanupEncodeSlotIfNecessary()
+        private MutableDirectBuffer decodeSlotBuffer()
         {
-            if (encodeSlot != NO_SLOT)
+            return decodeSlot == OVERLOAD_SLOT ? decodeOverload : bufferPool.buffer(decodeSlot);
+        }
+
+        private MutableDirectBuffer encodeSlotBuffer()
+        {
+            return encodeSlot == OVERLOAD_SLOT ? encodeOverload : bufferPool.buffer(encodeSlot);
+        }
+
+        private void doPauseNetworkIfNecessary()
+        {
+            if (!overloaded)
+            {
+                overloaded = true;
+                overloads.getAsLong();
+                overloadedServers.addLast(this);
+                doSignalOverloadResumeIfNecessary(currentTimeMillis() + idleTimers.tickMillis());
+            }
+        }
+
+        private boolean resumeIfNecessary(
+            long traceId)
+        {
+            if (decodeSlot == OVERLOAD_SLOT)
+            {
+                final int slot = bufferPool.acquire(initialId);
+                if (slot == NO_SLOT)
+                {
+                    return false;
+                }
+
+                bufferPool.buffer(slot).putBytes(0, decodeOverload, 0, decodeSlotOffset);
+                decodeSlot = slot;
+            }
+
+            if (encodeSlot == OVERLOAD_SLOT)
             {
-                bufferPool.release(encodeSlot);
-                encodeSlot = NO_SLOT;
-                encodeSlotOffset = 0;
-                encodeSlotTraceId = 0;
+                final int slot = encodeSlotOffset <= bufferPool.slotCapacity() ? bufferPool.acquire(replyId) : NO_SLOT;
+                if (slot == NO_SLOT)
+                {
+                    return false;
+                }
+
+                bufferPool.buffer(slot).putBytes(0, encodeOverload, 0, encodeSlotOffset);
+                encodeSlot = slot;
             }
+
+            overloaded = false;
+
+            final long authorization = this.authorization;
+            doNetworkWindowIfNecessary(traceId, authorization, 0);
+
+            return true;
         }
 
         private void doSignalReadIdleTimeoutIfNecessary()
         {
-            if (readIdleTimeout > 0)
+            if (readIdleTimeout > 0 && !AmqpState.initialClosed(state))
             {
-                readIdleTimeoutAt = currentTimeMillis() + readIdleTimeout;
+                final long readIdleTimeoutAt = currentTimeMillis() + readIdleTimeout;
 
-                if (readIdleTimeoutId == NO_CANCEL_ID)
+                if (readIdleTimerId == NO_TIMER)
                 {
-                    readIdleTimeoutId = signaler.signalAt(readIdleTimeoutAt, routeId, replyId, READ_IDLE_SIGNAL_ID);
+                    readIdleTimerId = idleTimers.schedule(readIdleTimeoutAt, onReadIdleTimeout);
+                    doSignalIdleTimerTickIfNecessary();
+                }
+                else
+                {
+                    idleTimers.reschedule(readIdleTimerId, readIdleTimeoutAt);
                 }
             }
         }
 
         private void doSignalWriteIdleTimeoutIfNecessary()
         {
-            if (writeIdleTimeout > 0)
+            if (writeIdleTimeout > 0 && !AmqpState.replyClosed(state))
             {
-                writeIdleTimeoutAt = currentTimeMillis() + writeIdleTimeout;
+                final long writeIdleTimeoutAt = currentTimeMillis() + writeIdleTimeout;
 
-                if (writeIdleTimeoutId == NO_CANCEL_ID)
+                if (writeIdleTimerId == NO_TIMER)
                 {
-                    writeIdleTimeoutId = signaler.signalAt(writeIdleTimeoutAt, routeId, replyId, WRITE_IDLE_SIGNAL_ID);
+                    writeIdleTimerId = idleTimers.schedule(writeIdleTimeoutAt, onWriteIdleTimeout);
+                    doSignalIdleTimerTickIfNecessary();
                 }
+                else
+                {
+                    idleTimers.reschedule(writeIdleTimerId, writeIdleTimeoutAt);
+                }
+            }
+        }
+
+        private void doCancelReadIdleTimeoutIfNecessary()
+        {
+            if (readIdleTimerId != NO_TIMER)
+            {
+                idleTimers.cancel(readIdleTimerId);
+                readIdleTimerId = NO_TIMER;
+            }
+        }
+
+        private void doCancelWriteIdleTimeoutIfNecessary()
+        {
+            if (writeIdleTimerId != NO_TIMER)
+            {
+                idleTimers.cancel(writeIdleTimerId);
+                writeIdleTimerId = NO_TIMER;
             }
         }
 
@@ -2849,6 +4012,11 @@ public final class AmqpServerFactory implements StreamFactory
         {
             private final Long2ObjectHashMap<AmqpServerStream> links;
             private final int incomingChannel;
+            private final long replySharedBudgetId;
+
+            private long replySharedBudgetIndex = NO_CREDITOR_INDEX;
+            private int replySharedBudget;
+            private boolean replyBudgetPending;
 
             private long deliveryId = NO_DELIVERY_ID;
             private long abortedDeliveryId = NO_DELIVERY_ID;
@@ -2859,17 +4027,43 @@ public final class AmqpServerFactory implements StreamFactory
             private int nextOutgoingId;
             private int outgoingWindow;
             private int remoteIncomingWindow;
+            private int remoteIncomingWindowId;
             private int remoteOutgoingWindow;
 
             private AmqpSessionState sessionState;
 
+            private final IntConsumer onFlowSignal = this::onFlowSignal;
+            private long flowSignalId = NO_CANCEL_ID;
+            private boolean flowRequired;
+
+            private long coordinatorHandle = NO_HANDLE;
+            private long coordinatorDeliveryCount;
+            private int coordinatorCredit;
+            private AmqpErrorType coordinatorError;
+            private boolean coordinatorFragmented;
+            private boolean coordinatorSettled;
+            private boolean coordinatorOverflow;
+            private int coordinatorSlot = NO_SLOT;
+            private int coordinatorSlotLimit;
+
+            private final IntConsumer onDispositionSignal = this::onDispositionSignal;
+            private long dispositionSignalId = NO_CANCEL_ID;
+            private long dispositionFirst;
+            private long dispositionLast;
+            private int dispositionCount;
+            private boolean dispositionSettled;
+            private OctetsFW dispositionState;
+
             private AmqpSession(
                 int incomingChannel)
             {
                 this.links = new Long2ObjectHashMap<>();
                 this.incomingChannel = incomingChannel;
-                this.nextOutgoingId++;
+                this.nextOutgoingId = INITIAL_NEXT_OUTGOING_ID;
                 this.sessionState = UNMAPPED;
+                this.remoteIncomingWindowId = remoteIncomingWindows.add(remoteIncomingWindow);
+                this.replySharedBudgetId = supplyBudgetId.getAsLong();
+                this.replySharedBudgetIndex = creditor.acquire(replySharedBudgetId);
             }
 
             private void outgoingChannel(
@@ -2900,6 +4094,8 @@ public final class AmqpServerFactory implements StreamFactory
                 int incomingWindow)
             {
                 this.remoteIncomingWindow = incomingWindow;
+                remoteIncomingWindows.update(remoteIncomingWindowId, incomingWindow);
+                doReplyBudgetPendingIfNecessary();
             }
 
             private void remoteOutgoingWindow(
@@ -2931,9 +4127,10 @@ public final class AmqpServerFactory implements StreamFactory
             {
                 final long handle = attach.handle();
                 decode:
-                if (links.containsKey(handle))
+                if (links.containsKey(handle) || handle == coordinatorHandle)
                 {
-                    if (links.get(handle).detachError != null)
+                    final AmqpServerStream link = links.get(handle);
+                    if (link != null && link.detachError != null)
                     {
                         onDecodeError(traceId, authorization, SESSION_ERRANT_LINK);
                         break decode;
@@ -2949,6 +4146,12 @@ public final class AmqpServerFactory implements StreamFactory
                     StringFW sourceAddress = sourceList != null && sourceList.hasAddress() ? sourceList.address() : null;
 
                     AmqpTargetFW target = attach.hasTarget() ? attach.target() : null;
+                    if (role == SENDER && target != null && target.kind() == COORDINATOR)
+                    {
+                        onDecodeCoordinatorAttach(traceId, authorization, attach);
+                        break decode;
+                    }
+
                     AmqpTargetListFW targetList = target != null ? target.targetList() : null;
                     StringFW targetAddress = targetList != null && targetList.hasAddress() ? targetList.address() : null;
 
@@ -2997,6 +4200,7 @@ public final class AmqpServerFactory implements StreamFactory
                 int flowOutgoingWindow = (int) flow.outgoingWindow();
                 boolean hasHandle = flow.hasHandle();
                 boolean echo = flow.echo() != 0;
+                boolean drain = flow.drain() != 0;
                 boolean hasLinkCredit = flow.hasLinkCredit();
                 boolean hasDeliveryCount = flow.hasDeliveryCount();
 
@@ -3019,21 +4223,26 @@ public final class AmqpServerFactory implements StreamFactory
                         break decode;
                     }
 
-                    attachedLink.onDecodeFlow(traceId, authorization, deliveryCount, linkCredit, echo);
+                    attachedLink.onDecodeFlow(traceId, authorization, deliveryCount, linkCredit, drain, echo);
                 }
                 else if (hasLinkCredit || hasDeliveryCount)
                 {
                     AmqpServer.this.onDecodeError(traceId, authorization, INVALID_FIELD, null);
                     return;
                 }
+                else if (echo && flowCoalescing)
+                {
+                    this.flowRequired = true;
+                    doSignalFlowIfNecessary();
+                }
                 else if (echo)
                 {
                     doEncodeFlow(traceId, authorization, outgoingChannel, nextOutgoingId, nextIncomingId, incomingWindow,
-                        -1, -1, -1);
+                        -1, -1, -1, false, false);
                 }
 
                 this.nextIncomingId = flowNextOutgoingId;
-                this.remoteIncomingWindow = flowNextIncomingId + flowIncomingWindow - nextOutgoingId;
+                remoteIncomingWindow(flowNextIncomingId + flowIncomingWindow - nextOutgoingId);
                 this.remoteOutgoingWindow = flowOutgoingWindow;
 
                 flushReplySharedBudget(traceId);
@@ -3044,6 +4253,7 @@ public final class AmqpServerFactory implements StreamFactory
                 long authorization,
                 AmqpTransferFW transfer,
                 int reserved,
+                boolean partial,
                 DirectBuffer buffer,
                 int offset,
                 int limit)
@@ -3067,10 +4277,65 @@ public final class AmqpServerFactory implements StreamFactory
                     boolean resume = transfer.hasResume() && transfer.resume() == 1;
                     boolean aborted = transfer.hasAborted() && transfer.aborted() == 1;
                     boolean batchable = transfer.hasBatchable() && transfer.batchable() == 1;
-                    boolean more = transfer.hasMore() && transfer.more() == 1;
+                    boolean more = partial || transfer.hasMore() && transfer.more() == 1;
                     AmqpServerStream link = links.get(transfer.handle());
-                    link.onDecodeTransfer(traceId, authorization, reserved, deliveryTag, messageFormat, settled,
-                        resume, aborted, batchable, more, buffer, offset, limit);
+                    AmqpDeliveryStateFW state = !link.fragmented && !link.presettled && transfer.hasState() ?
+                        transfer.state() : null;
+                    AmqpTransaction transaction = state != null ? supplyTransaction(state) : null;
+                    if (state != null && state.kind() == TRANSACTIONAL_STATE && transaction == null)
+                    {
+                        link.onDecodeError(traceId, authorization, TRANSACTION_UNKNOWN_ID);
+                    }
+                    else
+                    {
+                        if (!link.fragmented)
+                        {
+                            link.decodeTransaction = transaction;
+                        }
+                        link.onDecodeTransfer(traceId, authorization, reserved, deliveryTag, messageFormat, settled,
+                            resume, aborted, batchable, more, buffer, offset, limit);
+                    }
+                }
+            }
+
+            private void onDecodeDisposition(
+                long traceId,
+                long authorization,
+                AmqpDispositionFW disposition)
+            {
+                final AmqpRole role = disposition.role();
+                final long first = disposition.first();
+                final long last = disposition.hasLast() ? disposition.last() : first;
+                final boolean settled = disposition.hasSettled() && disposition.settled() == 1;
+
+                final AmqpTransaction transaction = disposition.hasState() ? supplyTransaction(disposition.state()) : null;
+
+                if (role == RECEIVER && transaction != null)
+                {
+                    transaction.doBufferDisposition(incomingChannel, first, last);
+                }
+                else if (role == RECEIVER)
+                {
+                    final boolean outcome = disposition.hasState();
+                    final boolean redeliver = outcome && isRedeliverable(disposition.state());
+
+                    boolean settle = false;
+                    for (AmqpServerStream link : links.values())
+                    {
+                        settle |= link.onDecodeDisposition(first, last, settled, outcome, redeliver);
+                    }
+
+                    if (settle)
+                    {
+                        doEncodeDisposition(traceId, authorization, outgoingChannel, SENDER, first, last, true, EMPTY_OCTETS);
+                    }
+                }
+                else if (settled)
+                {
+                    for (AmqpServerStream link : links.values())
+                    {
+                        link.onDecodeSettlement(first, last);
+                    }
                 }
             }
 
@@ -3078,12 +4343,24 @@ public final class AmqpServerFactory implements StreamFactory
                 long traceId,
                 long authorization,
                 AmqpErrorType errorType,
-                long handle)
+                long handle,
+                boolean closed)
             {
                 AmqpServerStream link = links.get(handle);
                 if (link != null)
                 {
-                    link.onDecodeDetach(traceId, authorization, errorType);
+                    link.onDecodeDetach(traceId, authorization, errorType, closed);
+                }
+                else if (handle == coordinatorHandle)
+                {
+                    if (coordinatorError == null)
+                    {
+                        doEncodeDetach(traceId, authorization, null, outgoingChannel, handle);
+                    }
+                    coordinatorHandle = NO_HANDLE;
+                    coordinatorError = null;
+                    coordinatorFragmented = false;
+                    cleanupCoordinatorSlotIfNecessary();
                 }
             }
 
@@ -3091,7 +4368,8 @@ public final class AmqpServerFactory implements StreamFactory
                 long traceId,
                 long authorization)
             {
-                AmqpServer.this.doEncodeBegin(traceId, authorization, incomingChannel, nextOutgoingId);
+                assert nextOutgoingId == INITIAL_NEXT_OUTGOING_ID;
+                AmqpServer.this.doEncodeBegin(traceId, authorization, incomingChannel);
                 sessionState = sessionState.sentBegin();
                 assert sessionState != AmqpSessionState.ERROR;
             }
@@ -3103,6 +4381,7 @@ public final class AmqpServerFactory implements StreamFactory
             {
                 if (sessionState == MAPPED || sessionState == END_RCVD)
                 {
+                    doFlushDispositions(traceId, authorization);
                     AmqpServer.this.doEncodeEnd(traceId, authorization, outgoingChannel, errorType);
                     sessionState = sessionState.sentEnd();
                 }
@@ -3113,47 +4392,560 @@ public final class AmqpServerFactory implements StreamFactory
                 long authorization)
             {
                 links.values().forEach(l -> l.cleanup(traceId, authorization));
+                cleanupCoordinatorSlotIfNecessary();
+                cleanupFlowSignalIfNecessary();
+                cleanupDispositionSignalIfNecessary();
+                cleanupRemoteIncomingWindowIfNecessary();
+                cleanupBudgetCreditorIfNecessary();
                 sessions.remove(incomingChannel);
+                if (replyBudgetPending)
+                {
+                    replyBudgetPending = false;
+                    pendingSessions.remove(this);
+                }
                 flushReplySharedBudget(traceId);
             }
 
-            private class AmqpServerStream
+            private int replyBudgetMax()
             {
-                private MessageConsumer application;
-                private long newRouteId;
-                private long initialId;
-                private long replyId;
+                return (int) Math.min((long) remoteIncomingWindow * encodeMaxFrameSize, Integer.MAX_VALUE);
+            }
 
-                private int state;
-                private int capabilities;
+            private boolean replyBudgetBlocked(
+                int replyBudgetTarget)
+            {
+                return replySharedBudgetIndex != NO_CREDITOR_INDEX &&
+                    replySharedBudget < Math.min(replyBudgetMax(), replyBudgetTarget);
+            }
 
-                private boolean fragmented;
-                private long remoteDeliveryCount;
-                private long deliveryCount;
-                private int remoteLinkCredit;
-                private int linkCredit;
+            private void doReplyBudgetPendingIfNecessary()
+            {
+                if (!replyBudgetPending && replySharedBudgetIndex != NO_CREDITOR_INDEX)
+                {
+                    replyBudgetPending = true;
+                    pendingSessions.addLast(this);
+                }
+            }
 
-                private BudgetDebitor debitor;
-                private long debitorIndex = NO_DEBITOR_INDEX;
+            private void flushReplyBudget(
+                long traceId,
+                int replyBudgetTarget)
+            {
+                final int replySharedBudgetMax = Math.min(replyBudgetMax(), replyBudgetTarget);
+                final int replySharedCredit = Math.min(replySharedBudgetMax - replySharedBudget,
+                    AmqpServer.this.replySharedBudget - replySessionBudget);
 
-                private long initialBudgetId;
-                private int initialBudget;
-                private int initialPadding;
+                if (replySharedCredit > 0 && replySharedBudgetIndex != NO_CREDITOR_INDEX)
+                {
+                    creditor.credit(traceId, replySharedBudgetIndex, replySharedCredit);
+                    this.replySharedBudget += replySharedCredit;
+                    replySessionBudget += replySharedCredit;
+                }
+            }
 
-                private int replyBudget;
+            private void reclaimReplyBudget(
+                long traceId,
+                int replyBudgetTarget)
+            {
+                final int replySharedExcess = replySharedBudget - Math.min(replyBudgetMax(), replyBudgetTarget);
 
-                private String name;
-                private long handle;
-                private AmqpRole role;
-                private StringFW addressFrom;
-                private StringFW addressTo;
-                private long decodeMaxMessageSize;
-                private long encodeMaxMessageSize;
+                if (replySharedExcess > 0 && replySharedBudgetIndex != NO_CREDITOR_INDEX)
+                {
+                    final long replySharedAvailable =
+                        creditor.credit(traceId, replySharedBudgetIndex, -replySharedExcess);
+                    final int replySharedReclaimed = (int) Math.min(replySharedExcess, Math.max(replySharedAvailable, 0L));
 
-                private AmqpErrorType detachError;
+                    if (replySharedReclaimed < replySharedExcess)
+                    {
+                        // credit already claimed by application streams stays with this session
+                        creditor.credit(traceId, replySharedBudgetIndex, replySharedExcess - replySharedReclaimed);
+                    }
 
-                private AmqpBodyKind encodeBodyKind;
-                private AmqpBodyKind decodeBodyKind;
+                    this.replySharedBudget -= replySharedReclaimed;
+                    replySessionBudget -= replySharedReclaimed;
+                }
+            }
+
+            private void onReplySharedBudgetConsumed(
+                int reserved)
+            {
+                this.replySharedBudget -= reserved;
+                replySessionBudget -= reserved;
+                AmqpServer.this.replySharedBudget -= reserved;
+                doReplyBudgetPendingIfNecessary();
+            }
+
+            private void cleanupBudgetCreditorIfNecessary()
+            {
+                if (replySharedBudgetIndex != NO_CREDITOR_INDEX)
+                {
+                    creditor.release(replySharedBudgetIndex);
+                    replySharedBudgetIndex = NO_CREDITOR_INDEX;
+                    replySessionBudget -= replySharedBudget;
+                    replySharedBudget = 0;
+                }
+            }
+
+            private void doSignalFlowIfNecessary()
+            {
+                if (flowSignalId == NO_CANCEL_ID)
+                {
+                    flowSignalId = signaler.signalAt(currentTimeMillis(), FLOW_SIGNAL_ID, onFlowSignal);
+                }
+            }
+
+            private void onFlowSignal(
+                int signalId)
+            {
+                assert signalId == FLOW_SIGNAL_ID;
+
+                flowSignalId = NO_CANCEL_ID;
+
+                if (!AmqpState.replyClosed(state))
+                {
+                    final long traceId = supplyTraceId.getAsLong();
+                    final long authorization = AmqpServer.this.authorization;
+
+                    maximum.value = 0;
+                    links.values().forEach(l -> maximum.value += l.flushRemoteLinkCredit());
+                    incomingWindow = maximum.value;
+
+                    boolean flushed = false;
+                    for (AmqpServerStream link : links.values())
+                    {
+                        if (link.flowRequired)
+                        {
+                            link.doEncodeLinkFlow(traceId, authorization);
+                            flushed = true;
+                        }
+                    }
+
+                    if (flowRequired && !flushed)
+                    {
+                        doEncodeFlow(traceId, authorization, outgoingChannel, nextOutgoingId, nextIncomingId, incomingWindow,
+                            -1, -1, -1, false, false);
+                    }
+                }
+                flowRequired = false;
+            }
+
+            private void cleanupFlowSignalIfNecessary()
+            {
+                if (flowSignalId != NO_CANCEL_ID)
+                {
+                    signaler.cancel(flowSignalId);
+                    flowSignalId = NO_CANCEL_ID;
+                }
+            }
+
+            private void onDecodeCoordinatorAttach(
+                long traceId,
+                long authorization,
+                AmqpAttachFW attach)
+            {
+                if (coordinatorHandle != NO_HANDLE)
+                {
+                    AmqpServer.this.onDecodeError(traceId, authorization, NOT_ALLOWED, null);
+                }
+                else
+                {
+                    coordinatorHandle = attach.handle();
+                    coordinatorDeliveryCount = attach.hasInitialDeliveryCount() ? attach.initialDeliveryCount() : 0;
+                    coordinatorCredit = COORDINATOR_LINK_CREDIT;
+
+                    doEncodeCoordinatorAttach(traceId, authorization, attach.name().asString(),
+                        outgoingChannel, coordinatorHandle);
+                    doEncodeFlow(traceId, authorization, outgoingChannel, nextOutgoingId, nextIncomingId, incomingWindow,
+                        coordinatorHandle, coordinatorDeliveryCount, coordinatorCredit, false, false);
+                }
+            }
+
+            private void onDecodeCoordinatorTransfer(
+                long traceId,
+                long authorization,
+                AmqpTransferFW transfer,
+                DirectBuffer buffer,
+                int offset,
+                int limit)
+            {
+                this.nextIncomingId = sequenceNext(nextIncomingId);
+                this.remoteOutgoingWindow--;
+                this.incomingWindow--;
+
+                final boolean more = transfer.hasMore() && transfer.more() == 1;
+                final boolean aborted = transfer.hasAborted() && transfer.aborted() == 1;
+
+                decode:
+                if (coordinatorError == null)
+                {
+                    final boolean initial = !coordinatorFragmented;
+                    if (initial)
+                    {
+                        if (coordinatorCredit <= 0)
+                        {
+                            onDecodeCoordinatorError(traceId, authorization, LINK_TRANSFER_LIMIT_EXCEEDED);
+                            break decode;
+                        }
+
+                        this.coordinatorDeliveryCount = sequenceNext(coordinatorDeliveryCount);
+                        this.coordinatorCredit--;
+                        this.coordinatorSettled = false;
+                    }
+
+                    this.coordinatorSettled |= transfer.hasSettled() && transfer.settled() == 1;
+                    this.coordinatorFragmented = more && !aborted;
+
+                    if (aborted)
+                    {
+                        cleanupCoordinatorSlotIfNecessary();
+                    }
+                    else if (more || !initial)
+                    {
+                        doBufferCoordinatorFragment(initial, buffer, offset, limit);
+
+                        if (!more)
+                        {
+                            final OctetsFW state = coordinatorOverflow ? rejectedState :
+                                onDecodeCoordinatorMessage(traceId, authorization, bufferPool.buffer(coordinatorSlot), 0,
+                                    coordinatorSlotLimit);
+                            doEncodeCoordinatorDisposition(traceId, authorization, state);
+                            cleanupCoordinatorSlotIfNecessary();
+                        }
+                    }
+                    else
+                    {
+                        final OctetsFW state = onDecodeCoordinatorMessage(traceId, authorization, buffer, offset, limit);
+                        doEncodeCoordinatorDisposition(traceId, authorization, state);
+                    }
+
+                    if (coordinatorCredit <= COORDINATOR_LINK_CREDIT / 2)
+                    {
+                        coordinatorCredit = COORDINATOR_LINK_CREDIT;
+                        doEncodeFlow(traceId, authorization, outgoingChannel, nextOutgoingId, nextIncomingId, incomingWindow,
+                            coordinatorHandle, coordinatorDeliveryCount, coordinatorCredit, false, false);
+                    }
+                }
+            }
+
+            private OctetsFW onDecodeCoordinatorMessage(
+                long traceId,
+                long authorization,
+                DirectBuffer buffer,
+                int offset,
+                int limit)
+            {
+                OctetsFW deliveryState = rejectedState;
+
+                final AmqpSectionTypeFW sectionType = amqpSectionTypeRO.tryWrap(buffer, offset, limit);
+                if (sectionType != null && sectionType.get() == AmqpSectionType.VALUE)
+                {
+                    final AmqpDeclareFW declare = amqpDeclareRO.tryWrap(buffer, sectionType.limit(), limit);
+                    if (declare != null && declare.kind() == DECLARE)
+                    {
+                        deliveryState = onDecodeDeclare();
+                    }
+                    else
+                    {
+                        final AmqpDischargeFW discharge = amqpDischargeRO.tryWrap(buffer, sectionType.limit(), limit);
+                        if (discharge != null && discharge.kind() == DISCHARGE)
+                        {
+                            deliveryState = onDecodeDischarge(traceId, authorization, discharge.dischargeList());
+                        }
+                    }
+                }
+
+                return deliveryState;
+            }
+
+            private void doEncodeCoordinatorDisposition(
+                long traceId,
+                long authorization,
+                OctetsFW deliveryState)
+            {
+                if (!coordinatorSettled || deliveryState != acceptedState)
+                {
+                    doEncodeDisposition(traceId, authorization, outgoingChannel, RECEIVER, remoteDeliveryId,
+                        remoteDeliveryId, true, deliveryState);
+                }
+            }
+
+            private void doBufferCoordinatorFragment(
+                boolean initial,
+                DirectBuffer buffer,
+                int offset,
+                int limit)
+            {
+                final int length = limit - offset;
+
+                if (initial)
+                {
+                    coordinatorSlot = bufferPool.acquire(initialId);
+                    coordinatorSlotLimit = 0;
+                    coordinatorOverflow = coordinatorSlot == NO_SLOT;
+                }
+
+                if (!coordinatorOverflow && coordinatorSlotLimit + length > bufferPool.slotCapacity())
+                {
+                    coordinatorOverflow = true;
+                }
+
+                if (!coordinatorOverflow)
+                {
+                    bufferPool.buffer(coordinatorSlot).putBytes(coordinatorSlotLimit, buffer, offset, length);
+                    coordinatorSlotLimit += length;
+                }
+            }
+
+            private void onDecodeCoordinatorError(
+                long traceId,
+                long authorization,
+                AmqpErrorType errorType)
+            {
+                doEncodeDetach(traceId, authorization, errorType, outgoingChannel, coordinatorHandle);
+                coordinatorError = errorType;
+                coordinatorFragmented = false;
+                cleanupCoordinatorSlotIfNecessary();
+            }
+
+            private void cleanupCoordinatorSlotIfNecessary()
+            {
+                if (coordinatorSlot != NO_SLOT)
+                {
+                    releaseSlot(coordinatorSlot);
+                    coordinatorSlot = NO_SLOT;
+                }
+                coordinatorSlotLimit = 0;
+                coordinatorOverflow = false;
+            }
+
+            private boolean onTransactionRecord(
+                long traceId,
+                long authorization,
+                DirectBuffer buffer,
+                int offset,
+                boolean commit)
+            {
+                boolean committed = commit;
+
+                final int kind = buffer.getByte(offset + TRANSACTION_KIND_OFFSET);
+                final long first = buffer.getLong(offset + TRANSACTION_FIRST_OFFSET);
+                final long last = buffer.getLong(offset + TRANSACTION_LAST_OFFSET);
+
+                switch (kind)
+                {
+                case TRANSACTION_TRANSFER:
+                    final AmqpServerStream link = links.get(buffer.getLong(offset + TRANSACTION_HANDLE_OFFSET));
+                    if (link != null)
+                    {
+                        final int flags = buffer.getInt(offset + TRANSACTION_FLAGS_OFFSET);
+                        final int reserved = buffer.getInt(offset + TRANSACTION_RESERVED_OFFSET);
+                        final int extensionSize = buffer.getInt(offset + TRANSACTION_EXTENSION_SIZE_OFFSET);
+                        final int payloadSize = buffer.getInt(offset + TRANSACTION_PAYLOAD_SIZE_OFFSET);
+
+                        final int extensionOffset = offset + TRANSACTION_HEADER_SIZE;
+                        final int payloadOffset = extensionOffset + extensionSize;
+                        final OctetsFW extension = transactionExtensionRO.wrap(buffer, extensionOffset, payloadOffset);
+                        final OctetsFW payload = payloadSize != -1 ?
+                            transactionPayloadRO.wrap(buffer, payloadOffset, payloadOffset + payloadSize) : null;
+
+                        committed = link.doApplicationTransactionalData(
+                            buffer.getLong(offset + TRANSACTION_TRACE_ID_OFFSET),
+                            buffer.getLong(offset + TRANSACTION_AUTHORIZATION_OFFSET),
+                            first, flags, reserved, payload, extension, commit);
+                    }
+                    else
+                    {
+                        // the link detached before discharge, so its deliveries cannot be committed
+                        committed = false;
+                    }
+                    break;
+                case TRANSACTION_DISPOSITION:
+                    if (commit)
+                    {
+                        for (AmqpServerStream outbound : links.values())
+                        {
+                            outbound.onDecodeDisposition(first, last, true, true, false);
+                        }
+                    }
+                    break;
+                default:
+                    break;
+                }
+
+                return committed;
+            }
+
+            private void doEncodeDispositionBatched(
+                long traceId,
+                long authorization,
+                long first,
+                long last,
+                boolean settled,
+                OctetsFW state,
+                boolean prompt)
+            {
+                if (dispositionCount > 0 &&
+                    (first != sequenceNext(dispositionLast) || dispositionSettled != settled || dispositionState != state))
+                {
+                    doFlushDispositions(traceId, authorization);
+                }
+
+                if (dispositionCount == 0)
+                {
+                    dispositionFirst = first;
+                    dispositionSettled = settled;
+                    dispositionState = state;
+                }
+                dispositionLast = last;
+                dispositionCount += (int) Math.min(((last - first) & 0xFFFF_FFFFL) + 1, dispositionBatchSize);
+
+                if (prompt || dispositionCount >= dispositionBatchSize)
+                {
+                    doFlushDispositions(traceId, authorization);
+                }
+                else if (dispositionSignalId == NO_CANCEL_ID)
+                {
+                    dispositionSignalId = signaler.signalAt(currentTimeMillis(), DISPOSITION_SIGNAL_ID, onDispositionSignal);
+                }
+            }
+
+            private void onDispositionSignal(
+                int signalId)
+            {
+                assert signalId == DISPOSITION_SIGNAL_ID;
+
+                dispositionSignalId = NO_CANCEL_ID;
+
+                if (!AmqpState.replyClosed(state))
+                {
+                    final long traceId = supplyTraceId.getAsLong();
+                    final long authorization = AmqpServer.this.authorization;
+
+                    doFlushDispositions(traceId, authorization);
+                }
+            }
+
+            private void doFlushDispositions(
+                long traceId,
+                long authorization)
+            {
+                if (dispositionCount > 0)
+                {
+                    doEncodeDisposition(traceId, authorization, outgoingChannel, RECEIVER,
+                        dispositionFirst, dispositionLast, dispositionSettled, dispositionState);
+                    dispositionCount = 0;
+                    dispositionState = null;
+                }
+            }
+
+            private void cleanupDispositionSignalIfNecessary()
+            {
+                if (dispositionSignalId != NO_CANCEL_ID)
+                {
+                    signaler.cancel(dispositionSignalId);
+                    dispositionSignalId = NO_CANCEL_ID;
+                }
+                dispositionCount = 0;
+            }
+
+            private void cleanupRemoteIncomingWindowIfNecessary()
+            {
+                if (remoteIncomingWindowId != NO_ENTRY)
+                {
+                    remoteIncomingWindows.remove(remoteIncomingWindowId);
+                    remoteIncomingWindowId = NO_ENTRY;
+                }
+            }
+
+            private class AmqpServerStream
+            {
+                private MessageConsumer application;
+                private long newRouteId;
+                private long initialId;
+                private long replyId;
+
+                private int state;
+                private int capabilities;
+
+                private boolean fragmented;
+                private long remoteDeliveryCount;
+                private long deliveryCount;
+                private int remoteLinkCredit;
+                private int linkCredit;
+
+                private BudgetDebitor debitor;
+                private long debitorIndex = NO_DEBITOR_INDEX;
+
+                private final AmqpCreditTuner creditTuner;
+
+                private boolean flowPending;
+                private boolean flowRequired;
+
+                private int encodeQueueId = NO_QUEUE;
+
+                private final LongConsumer onDrainTimeout = this::onDrainTimeout;
+                private int drainTimerId = NO_TIMER;
+                private long drainDeliveryCount;
+
+                private int pendingSlot = NO_SLOT;
+                private int pendingLimit;
+                private int pendingCount;
+                private int pendingBytes;
+                private int pendingReserved;
+                private int pendingPriorities;
+
+                private long initialBudgetId;
+                private long authorization;
+                private int initialBudget;
+                private int initialPadding;
+                private int initialBudgetMax;
+                private int initialUnclaimed;
+                private long initialCredited;
+                private long initialSent;
+
+                private final AmqpUnsettledMap unsettled;
+                private final boolean relayBareMessages;
+                private long decodeDeliveryId;
+                private boolean decodeSettled;
+                private boolean decodeBatchable;
+                private long promptPosition = Long.MAX_VALUE;
+
+                private boolean presettled;
+                private AmqpTransaction decodeTransaction;
+                private AmqpDedupIndex dedup;
+                private boolean decodeDuplicate;
+                private long decodeFingerprint;
+                private boolean receiverSettleSecond;
+                private boolean remoteSettleSecond;
+                private AmqpUnsettledMap settling;
+                private AmqpUnsettledMap recovered;
+                private boolean recovering;
+                private boolean recoveredSettled;
+                private final LongConsumer onSettleTimeout = this::onSettleTimeout;
+                private int settleTimerId = NO_TIMER;
+                private final LongConsumer onRedeliveryTimeout = this::onRedeliveryTimeout;
+                private int redeliveryTimerId = NO_TIMER;
+                private int retainedSlot = NO_SLOT;
+                private int retainedLimit;
+                private long redeliveryDeadline = NO_DEADLINE;
+                private boolean redeliveriesHeld;
+                private int encodeRedeliveries;
+
+                private int replyBudget;
+                private long replyReceived;
+
+                private String name;
+                private long handle;
+                private AmqpRole role;
+                private StringFW addressFrom;
+                private StringFW addressTo;
+                private long decodeMaxMessageSize;
+                private long encodeMaxMessageSize;
+
+                private AmqpErrorType detachError;
+
+                private AmqpBodyKind encodeBodyKind;
+                private AmqpBodyKind decodeBodyKind;
 
                 private AmqpSectionDecoder decoder;
                 private int decodableBytes;
@@ -3173,12 +4965,15 @@ public final class AmqpServerFactory implements StreamFactory
                     this.addressFrom = new String8FW(addressFrom);
                     this.addressTo = new String8FW(addressTo);
                     this.role = role;
+                    this.relayBareMessages = relayBareAddresses.contains(role == RECEIVER ? addressFrom : addressTo);
                     this.capabilities = 0;
                     this.newRouteId = route.correlationId();
                     this.initialId = supplyInitialId.applyAsLong(newRouteId);
                     this.replyId = supplyReplyId.applyAsLong(initialId);
                     this.application = router.supplyReceiver(initialId);
                     this.decodeMaxMessageSize = defaultMaxMessageSize;
+                    this.creditTuner = linkCreditAutotune ? new AmqpCreditTuner(linkCreditMin, linkCreditMax) : null;
+                    this.unsettled = new AmqpUnsettledMap(UNSETTLED_INITIAL_CAPACITY, UNSETTLED_MAX_CAPACITY);
                 }
 
                 private void onDecodeAttach(
@@ -3186,6 +4981,7 @@ public final class AmqpServerFactory implements StreamFactory
                     long authorization,
                     AmqpAttachFW attach)
                 {
+                    this.authorization = authorization;
                     this.name = attach.name().asString();
                     this.handle = attach.handle();
                     this.encodeMaxMessageSize = attach.hasMaxMessageSize() ? attach.maxMessageSize() : 0;
@@ -3195,6 +4991,24 @@ public final class AmqpServerFactory implements StreamFactory
                     final AmqpReceiverSettleMode amqpReceiverSettleMode = attach.rcvSettleMode();
 
                     remoteDeliveryCount = attach.hasInitialDeliveryCount() ? attach.initialDeliveryCount() : 0;
+                    remoteSettleSecond = role == RECEIVER && amqpReceiverSettleMode == SECOND;
+                    presettled = role == SENDER && amqpSenderSettleMode == SETTLED;
+
+                    if (role == SENDER && !presettled && dedupDeliveries > 0)
+                    {
+                        dedup = new AmqpDedupIndex(dedupDeliveries);
+                    }
+
+                    if (role == SENDER && recoveryLinks > 0 && remoteContainerId != null)
+                    {
+                        recovered = recoveries.take(authorization, remoteContainerId, name, currentTimeMillis());
+                    }
+
+                    if (encodeScheduler != null && role == RECEIVER)
+                    {
+                        encodeQueueId = encodeScheduler.add(decodeLinkWeight(attach));
+                        encodeQueues.put(encodeQueueId, this);
+                    }
 
                     doApplicationBeginIfNecessary(traceId, authorization, affinity, capability, amqpSenderSettleMode,
                         amqpReceiverSettleMode);
@@ -3207,16 +5021,109 @@ public final class AmqpServerFactory implements StreamFactory
                     long authorization,
                     long decodeDeliveryCount,
                     int decodeLinkCredit,
+                    boolean drain,
                     boolean echo)
                 {
-                    if (echo)
+                    if (echo && flowCoalescing)
+                    {
+                        this.flowPending = true;
+                        this.flowRequired = true;
+                        doSignalFlowIfNecessary();
+                    }
+                    else if (echo)
                     {
                         doEncodeFlow(traceId, authorization, outgoingChannel, nextOutgoingId, nextIncomingId, incomingWindow,
-                            handle, deliveryCount, remoteLinkCredit);
+                            handle, deliveryCount, remoteLinkCredit, false, false);
                     }
-                    this.linkCredit = (int) (decodeDeliveryCount + decodeLinkCredit - remoteDeliveryCount);
+                    if (creditTuner != null && !echo)
+                    {
+                        // only the reply to our echo carries back the credit limit we granted
+                        creditTuner.onFlow(currentTimeMillis(), (decodeDeliveryCount + decodeLinkCredit) & 0xFFFF_FFFFL);
+                    }
+                    // outbound credit is measured against every delivery sent so far, including those still in flight
+                    final long senderDeliveryCount = role == RECEIVER ? deliveryCount : remoteDeliveryCount;
+                    this.linkCredit = (int) (decodeDeliveryCount + decodeLinkCredit - senderDeliveryCount);
                     this.remoteDeliveryCount = decodeDeliveryCount;
+
+                    if (linkCredit > 0)
+                    {
+                        if (pendingCount > 0)
+                        {
+                            flushPendingDeliveries();
+                        }
+                        doRetryRedeliveriesIfNecessary();
+                    }
+
                     flushReplyWindow(traceId, authorization);
+
+                    if (drain && role == RECEIVER)
+                    {
+                        this.drainDeliveryCount = decodeDeliveryCount + decodeLinkCredit;
+                        doSignalDrainTimeout();
+                    }
+                    else
+                    {
+                        doCancelDrainTimeoutIfNecessary();
+                    }
+                }
+
+                private void onDrainTimeout(
+                    long now)
+                {
+                    drainTimerId = NO_TIMER;
+
+                    if (!AmqpState.replyClosed(state))
+                    {
+                        final long traceId = supplyTraceId.getAsLong();
+                        final long authorization = this.authorization;
+
+                        this.deliveryCount = drainDeliveryCount;
+                        this.remoteDeliveryCount = drainDeliveryCount;
+                        this.linkCredit = 0;
+
+                        doEncodeFlow(traceId, authorization, outgoingChannel, nextOutgoingId, nextIncomingId, incomingWindow,
+                            handle, deliveryCount, linkCredit, true, false);
+                    }
+                }
+
+                private void flushPendingDeliveries()
+                {
+                    if (encodeQueueId != NO_QUEUE)
+                    {
+                        if (pendingCount > 0)
+                        {
+                            encodeScheduler.activate(encodeQueueId);
+                        }
+                        flushEncodeQueues();
+                    }
+                    else
+                    {
+                        doEncodePendingDeliveries();
+                    }
+                }
+
+                private void doSignalDrainTimeout()
+                {
+                    final long drainTimeoutAt = currentTimeMillis() + drainTimeout;
+
+                    if (drainTimerId == NO_TIMER)
+                    {
+                        drainTimerId = idleTimers.schedule(drainTimeoutAt, onDrainTimeout);
+                        doSignalIdleTimerTickIfNecessary();
+                    }
+                    else
+                    {
+                        idleTimers.reschedule(drainTimerId, drainTimeoutAt);
+                    }
+                }
+
+                private void doCancelDrainTimeoutIfNecessary()
+                {
+                    if (drainTimerId != NO_TIMER)
+                    {
+                        idleTimers.cancel(drainTimerId);
+                        drainTimerId = NO_TIMER;
+                    }
                 }
 
                 private void onDecodeTransfer(
@@ -3234,16 +5141,40 @@ public final class AmqpServerFactory implements StreamFactory
                     int offset,
                     int limit)
                 {
+                    if (!fragmented && dedup != null)
+                    {
+                        onDecodeDeliveryTag(deliveryTag, settled);
+                    }
+
                     int flags = 0;
-                    if (!fragmented)
+                    boolean untracked = false;
+                    if (presettled)
+                    {
+                        flags |= fragmented ? 0 : FLAG_INIT;
+                    }
+                    else if (!fragmented)
                     {
                         flags |= FLAG_INIT;
+                        this.decodeDeliveryId = remoteDeliveryId;
+                        this.decodeSettled = settled;
+                        this.decodeBatchable = batchable;
+                        if (!settled && decodeTransaction == null && !decodeDuplicate)
+                        {
+                            final OctetsFW tag = deliveryTag != null ? deliveryTag.get(deliveryTagRO::tryWrap) : EMPTY_OCTETS;
+                            untracked = !unsettled.add(remoteDeliveryId, tag.buffer(), tag.offset(), tag.sizeof(),
+                                Long.MAX_VALUE);
+                        }
                         if (more)
                         {
                             this.deliveryTag = deliveryTag;
                             this.messageFormat = messageFormat;
                         }
                     }
+                    else
+                    {
+                        this.decodeSettled |= settled;
+                        this.decodeBatchable &= batchable;
+                    }
                     if (aborted)
                     {
                         flags = FLAG_INCOMPLETE;
@@ -3253,6 +5184,11 @@ public final class AmqpServerFactory implements StreamFactory
                     {
                         flags |= FLAG_FIN;
                         deliveryCount = sequenceNext(deliveryCount);
+
+                        if (creditTuner != null)
+                        {
+                            creditTuner.onDelivery(currentTimeMillis());
+                        }
                     }
 
                     int transferFlags = 0;
@@ -3274,14 +5210,20 @@ public final class AmqpServerFactory implements StreamFactory
                             break decode;
                         }
 
+                        if (remoteLinkCredit == 0 && creditTuner != null)
+                        {
+                            creditTuner.onCreditExhausted();
+                        }
+
                         final AmqpDataExFW.Builder amqpDataEx = amqpDataExRW.wrap(extraBuffer, 0, extraBuffer.capacity())
                             .typeId(amqpTypeId)
                             .deliveryTag(b -> b.bytes(deliveryTag.get(deliveryTagRO::tryWrap)))
                             .messageFormat(messageFormat)
                             .flags(transferFlags);
 
-                        final OctetsFW messageFragment = amqpMessageDecodeHelper.decodeFragmentInit(this, buffer, offset, limit,
-                            amqpDataEx);
+                        final OctetsFW messageFragment = relayBareMessages ?
+                            amqpMessageDecodeHelper.decodeBareMessageInit(this, buffer, offset, limit, amqpDataEx) :
+                            amqpMessageDecodeHelper.decodeFragmentInit(this, buffer, offset, limit, amqpDataEx);
                         size = messageFragment.sizeof();
                         if (size > 0)
                         {
@@ -3296,6 +5238,7 @@ public final class AmqpServerFactory implements StreamFactory
                     else
                     {
                         OctetsFW messageFragment =  aborted ? EMPTY_OCTETS :
+                            relayBareMessages ? amqpMessageDecodeHelper.decodeBareMessage(buffer, offset, limit) :
                             amqpMessageDecodeHelper.decodeFragment(this, buffer, offset, limit);
                         size = messageFragment.sizeof();
                         if (size >= 0)
@@ -3312,27 +5255,165 @@ public final class AmqpServerFactory implements StreamFactory
                     {
                         onDecodeError(traceId, authorization, LINK_MESSAGE_SIZE_EXCEEDED);
                     }
-                    else if (fragmented && ((deliveryTag != null && !this.deliveryTag.equals(deliveryTag)) ||
+                    else if (fragmented && !presettled && ((deliveryTag != null && !this.deliveryTag.equals(deliveryTag)) ||
                         this.messageFormat != messageFormat))
                     {
                         AmqpServer.this.onDecodeError(traceId, authorization, INVALID_FIELD, null);
                     }
+                    else if (untracked)
+                    {
+                        onDecodeError(traceId, authorization, RESOURCE_LIMIT_EXCEEDED);
+                    }
+                    else if (decodeDuplicate)
+                    {
+                        onDecodeDuplicate(traceId, authorization, flags, reserved);
+                    }
+                    else if (decodeTransaction != null)
+                    {
+                        doBufferTransactionalData(traceId, authorization, flags, reserved, payload, extension);
+                    }
                     else
                     {
                         doApplicationData(traceId, authorization, flags, reserved, payload, extension);
+
+                        if (!presettled && unsettled.contains(decodeDeliveryId))
+                        {
+                            if (aborted || ((flags & FLAG_FIN) != 0 && decodeSettled))
+                            {
+                                unsettled.settle(decodeDeliveryId, decodeDeliveryId);
+                            }
+                            else if ((flags & FLAG_FIN) != 0)
+                            {
+                                unsettled.position(decodeDeliveryId, initialSent);
+
+                                if (!decodeBatchable && promptPosition == Long.MAX_VALUE)
+                                {
+                                    promptPosition = initialSent;
+                                }
+                            }
+                        }
+                    }
+
+                    if (dedup != null && !decodeDuplicate && decodeFingerprint != 0L && aborted)
+                    {
+                        // aborted deliveries were never received, so the sender may resend them with the same tag
+                        dedup.remove(decodeFingerprint);
                     }
 
                     this.fragmented = more;
                 }
 
+                private void onDecodeDeliveryTag(
+                    BoundedOctetsFW deliveryTag,
+                    boolean settled)
+                {
+                    final OctetsFW tag = deliveryTag != null ? deliveryTag.get(deliveryTagRO::tryWrap) : EMPTY_OCTETS;
+
+                    decodeDuplicate = false;
+                    decodeFingerprint = 0L;
+
+                    // deliveries settled by the sender are never retransmitted
+                    if (!settled && tag.sizeof() != 0)
+                    {
+                        decodeFingerprint = AmqpDedupIndex.fingerprint(tag.buffer(), tag.offset(), tag.sizeof());
+                        decodeDuplicate = !dedup.add(decodeFingerprint);
+                    }
+                }
+
+                private void onDecodeDuplicate(
+                    long traceId,
+                    long authorization,
+                    int flags,
+                    int reserved)
+                {
+                    // duplicate never reaches the application, so its claim stays with this link
+                    this.initialBudget -= reserved;
+                    unclaimInitialBudget(reserved);
+
+                    if ((flags & FLAG_FIN) != 0)
+                    {
+                        if (!presettled && !decodeSettled)
+                        {
+                            doEncodeDispositionBatched(traceId, authorization, decodeDeliveryId, decodeDeliveryId, true,
+                                acceptedState, !decodeBatchable);
+                        }
+
+                        flushInitialWindow(traceId, authorization);
+                    }
+                }
+
                 private void onDecodeDetach(
                     long traceId,
                     long authorization,
-                    AmqpErrorType errorType)
+                    AmqpErrorType errorType,
+                    boolean closed)
                 {
+                    if (!closed)
+                    {
+                        doStoreRecoveryIfNecessary();
+                    }
                     doApplicationEndIfNecessary(traceId, authorization, EMPTY_OCTETS);
                 }
 
+                private void doStoreRecoveryIfNecessary()
+                {
+                    if (recoveryLinks > 0 && remoteContainerId != null && settling != null && !settling.isEmpty() &&
+                        settling.size() <= recoveryDeliveries)
+                    {
+                        doCancelSettleTimeoutIfNecessary();
+                        recoveries.store(authorization, remoteContainerId, name, settling, currentTimeMillis());
+                        settling = null;
+                    }
+                }
+
+                private boolean onDecodeRecoveredTransfer(
+                    long traceId,
+                    long authorization,
+                    AmqpTransferFW transfer,
+                    long deliveryId)
+                {
+                    boolean skip = recovering;
+
+                    if (!fragmented && recovered != null && transfer.hasResume() && transfer.resume() == 1 &&
+                        transfer.hasDeliveryTag())
+                    {
+                        final OctetsFW tag = transfer.deliveryTag().get(deliveryTagRO::tryWrap);
+                        final long recoveredId = recovered.find(tag.buffer(), tag.offset(), tag.sizeof());
+                        if (recoveredId != AmqpUnsettledMap.NO_DELIVERY_ID)
+                        {
+                            recovered.settle(recoveredId, recoveredId);
+                            remoteLinkCredit--;
+                            recoveredSettled = false;
+                            skip = true;
+                        }
+                    }
+
+                    if (skip)
+                    {
+                        nextIncomingId = sequenceNext(nextIncomingId);
+                        remoteOutgoingWindow--;
+                        incomingWindow--;
+
+                        final boolean aborted = transfer.hasAborted() && transfer.aborted() == 1;
+                        recovering = transfer.hasMore() && transfer.more() == 1 && !aborted;
+                        recoveredSettled |= transfer.hasSettled() && transfer.settled() == 1;
+                        fragmented = recovering;
+
+                        if (!recovering && !aborted)
+                        {
+                            deliveryCount = sequenceNext(deliveryCount);
+
+                            if (!recoveredSettled)
+                            {
+                                doEncodeDispositionBatched(traceId, authorization, deliveryId, deliveryId, true, acceptedState,
+                                    false);
+                            }
+                        }
+                    }
+
+                    return skip;
+                }
+
                 private void onDecodeError(
                     long traceId,
                     long authorization,
@@ -3372,24 +5453,93 @@ public final class AmqpServerFactory implements StreamFactory
 
                     router.setThrottle(initialId, this::onApplication);
 
-                    StringFW address = null;
-                    switch (role)
+                    StringFW address = null;
+                    switch (role)
+                    {
+                    case RECEIVER:
+                        address = addressFrom;
+                        break;
+                    case SENDER:
+                        address = addressTo;
+                    }
+                    final AmqpBeginExFW beginEx = amqpBeginExRW.wrap(extraBuffer, 0, extraBuffer.capacity())
+                        .typeId(amqpTypeId)
+                        .address((String8FW) address)
+                        .capabilities(r -> r.set(AmqpCapabilities.valueOf(capabilities)))
+                        .senderSettleMode(s -> s.set(amqpSenderSettleMode(senderSettleMode)))
+                        .receiverSettleMode(r -> r.set(amqpReceiverSettleMode(receiverSettleMode)))
+                        .build();
+
+                    doBegin(application, newRouteId, initialId, traceId, authorization, affinity, beginEx);
+                }
+
+                private int partialFragmentMax()
+                {
+                    return !partialTransfers || !fragmented ? 0 : relayBareMessages ? Integer.MAX_VALUE : decodableBytes;
+                }
+
+                private int claimFragment(
+                    long traceId,
+                    int fragmentSize,
+                    int partialMax)
+                {
+                    final int fragmentReserved = fragmentSize + initialPadding;
+
+                    int reserved = 0;
+                    if (fragmentReserved <= initialBudget)
+                    {
+                        reserved = claimInitialBudget(traceId, fragmentReserved, fragmentReserved);
+                    }
+
+                    if (reserved == 0 && partialMax > 0)
+                    {
+                        final int minimum = initialPadding + Math.min(Math.min(partialMax, fragmentSize),
+                            MIN_PARTIAL_FRAGMENT_SIZE);
+                        final int maximum = Math.min(initialPadding + Math.min(partialMax, fragmentSize), initialBudget);
+                        if (minimum <= maximum)
+                        {
+                            reserved = claimInitialBudget(traceId, minimum, maximum);
+                        }
+                    }
+
+                    return reserved;
+                }
+
+                private int claimInitialBudget(
+                    long traceId,
+                    int minimum,
+                    int maximum)
+                {
+                    int claimed = maximum;
+
+                    if (debitorIndex != NO_DEBITOR_INDEX)
+                    {
+                        final int reclaimed = Math.min(initialUnclaimed, maximum);
+                        claimed = reclaimed;
+
+                        if (reclaimed < minimum)
+                        {
+                            final int debited = debitor.claim(traceId, debitorIndex, initialId, minimum - reclaimed,
+                                maximum - reclaimed, 0);
+                            claimed = debited != 0 ? reclaimed + debited : 0;
+                        }
+
+                        initialUnclaimed -= claimed != 0 ? reclaimed : 0;
+                    }
+
+                    return claimed;
+                }
+
+                private void unclaimInitialBudget(
+                    int reserved)
+                {
+                    this.initialBudget += reserved;
+
+                    if (debitorIndex != NO_DEBITOR_INDEX)
                     {
-                    case RECEIVER:
-                        address = addressFrom;
-                        break;
-                    case SENDER:
-                        address = addressTo;
+                        // shared budget cannot be handed back, so keep it for the next claim on this link
+                        this.initialUnclaimed += reserved;
                     }
-                    final AmqpBeginExFW beginEx = amqpBeginExRW.wrap(extraBuffer, 0, extraBuffer.capacity())
-                        .typeId(amqpTypeId)
-                        .address((String8FW) address)
-                        .capabilities(r -> r.set(AmqpCapabilities.valueOf(capabilities)))
-                        .senderSettleMode(s -> s.set(amqpSenderSettleMode(senderSettleMode)))
-                        .receiverSettleMode(r -> r.set(amqpReceiverSettleMode(receiverSettleMode)))
-                        .build();
-
-                    doBegin(application, newRouteId, initialId, traceId, authorization, affinity, beginEx);
                 }
 
                 private void doApplicationData(
@@ -3406,6 +5556,7 @@ public final class AmqpServerFactory implements StreamFactory
                     assert reserved >= length + initialPadding;
 
                     this.initialBudget -= reserved;
+                    this.initialSent += reserved;
 
                     assert initialBudget >= 0;
 
@@ -3413,6 +5564,58 @@ public final class AmqpServerFactory implements StreamFactory
                         extension);
                 }
 
+                private void doBufferTransactionalData(
+                    long traceId,
+                    long authorization,
+                    int flags,
+                    int reserved,
+                    OctetsFW payload,
+                    Flyweight extension)
+                {
+                    this.initialBudget -= reserved;
+
+                    assert initialBudget >= 0;
+
+                    if (!decodeTransaction.doBufferTransfer(traceId, authorization, incomingChannel, handle, decodeDeliveryId,
+                        flags, reserved, payload, extension))
+                    {
+                        doApplicationTransactionalData(traceId, authorization, decodeDeliveryId, flags, reserved,
+                            null, EMPTY_OCTETS, false);
+                    }
+                }
+
+                private boolean doApplicationTransactionalData(
+                    long traceId,
+                    long authorization,
+                    long deliveryId,
+                    int flags,
+                    int reserved,
+                    OctetsFW payload,
+                    OctetsFW extension,
+                    boolean commit)
+                {
+                    if (commit && AmqpState.initialOpening(state) && !AmqpState.initialClosed(state))
+                    {
+                        this.initialSent += reserved;
+
+                        doData(application, newRouteId, initialId, traceId, authorization, flags, initialBudgetId, reserved,
+                            payload, extension);
+                    }
+                    else
+                    {
+                        unclaimInitialBudget(reserved);
+                        commit = false;
+                    }
+
+                    if ((flags & FLAG_FIN) != 0)
+                    {
+                        doEncodeDispositionBatched(traceId, authorization, deliveryId, deliveryId, true,
+                            commit ? acceptedState : releasedState, false);
+                    }
+
+                    return commit;
+                }
+
                 private void doApplicationAbort(
                     long traceId,
                     long authorization,
@@ -3443,6 +5646,7 @@ public final class AmqpServerFactory implements StreamFactory
                     {
                         debitor.release(debitorIndex, initialId);
                         debitorIndex = NO_DEBITOR_INDEX;
+                        initialUnclaimed = 0;
                     }
 
                     if (AmqpState.closed(state))
@@ -3500,40 +5704,528 @@ public final class AmqpServerFactory implements StreamFactory
                     final int credit = window.credit();
                     final int padding = window.padding();
 
-                    this.state = AmqpState.openInitial(state);
-                    this.initialBudgetId = budgetId;
-                    this.initialBudget += credit;
-                    this.initialPadding = padding;
+                    this.state = AmqpState.openInitial(state);
+                    this.initialBudgetId = budgetId;
+                    this.initialBudget += credit;
+                    this.initialPadding = padding;
+                    this.initialCredited += credit;
+                    this.initialBudgetMax = Math.max(initialBudgetMax, initialBudget);
+
+                    if (budgetId != 0L && debitorIndex == NO_DEBITOR_INDEX)
+                    {
+                        debitor = supplyDebitor.apply(budgetId);
+                        debitorIndex = debitor.acquire(budgetId, initialId, AmqpServer.this::decodeNetworkIfNecessary);
+                    }
+
+                    flushInitialWindow(traceId, authorization);
+
+                    // credit returned beyond the largest window observed acknowledges delivered bytes
+                    doEncodeInitialDispositions(traceId, authorization, initialCredited - initialBudgetMax, acceptedState);
+
+                    if (AmqpState.initialClosing(state) && !AmqpState.initialClosed(state))
+                    {
+                        doApplicationEnd(traceId, authorization, EMPTY_OCTETS);
+                    }
+                }
+
+                private void flushInitialWindow(
+                    long traceId,
+                    long authorization)
+                {
+                    if (AmqpState.replyOpened(state) && role == SENDER)
+                    {
+                        if (flowCoalescing)
+                        {
+                            this.flowPending = true;
+                            doSignalFlowIfNecessary();
+                        }
+                        else
+                        {
+                            this.remoteLinkCredit = supplyRemoteLinkCredit();
+
+                            maximum.value = 0;
+                            links.values().forEach(l -> maximum.value += l.remoteLinkCredit);
+                            incomingWindow = maximum.value;
+
+                            doEncodeLinkFlow(traceId, authorization);
+                        }
+                    }
+                }
+
+                private void doEncodeInitialDispositions(
+                    long traceId,
+                    long authorization,
+                    long position,
+                    OctetsFW state)
+                {
+                    while (role == SENDER && !unsettled.isEmpty() && unsettled.position(unsettled.first()) <= position)
+                    {
+                        final long first = unsettled.first();
+                        final long last = lastOfRun(unsettled, position);
+
+                        final boolean prompt = unsettled.position(last) >= promptPosition || position == Long.MAX_VALUE;
+                        if (prompt)
+                        {
+                            promptPosition = Long.MAX_VALUE;
+                        }
+
+                        doEncodeDispositionBatched(traceId, authorization, first, last, !receiverSettleSecond, state, prompt);
+
+                        if (receiverSettleSecond)
+                        {
+                            doTrackSettling(traceId, authorization, first, last);
+                        }
+
+                        unsettled.settle(first, last);
+                    }
+                }
+
+                private long lastOfRun(
+                    AmqpUnsettledMap deliveries,
+                    long position)
+                {
+                    final long newest = deliveries.last();
+                    long last = deliveries.first();
+                    while (last != newest)
+                    {
+                        final long deliveryId = sequenceNext(last);
+                        if (!deliveries.contains(deliveryId) || deliveries.position(deliveryId) > position)
+                        {
+                            break;
+                        }
+                        last = deliveryId;
+                    }
+                    return last;
+                }
+
+                private void doTrackSettling(
+                    long traceId,
+                    long authorization,
+                    long first,
+                    long last)
+                {
+                    final long settleAt = currentTimeMillis() + settleTimeout;
+
+                    if (settling == null)
+                    {
+                        settling = new AmqpUnsettledMap(UNSETTLED_INITIAL_CAPACITY, UNSETTLED_MAX_CAPACITY);
+                    }
+
+                    for (long deliveryId = first; ; deliveryId = sequenceNext(deliveryId))
+                    {
+                        if (unsettled.contains(deliveryId))
+                        {
+                            final int tagSize = unsettled.tag(deliveryId, tagBuffer, 0);
+                            if (!settling.add(deliveryId, tagBuffer, 0, tagSize, settleAt))
+                            {
+                                doEncodeDispositionBatched(traceId, authorization, deliveryId, deliveryId, true, EMPTY_OCTETS,
+                                    false);
+                            }
+                        }
+
+                        if (deliveryId == last)
+                        {
+                            break;
+                        }
+                    }
+
+                    if (settleTimerId == NO_TIMER && settleTimeout > 0)
+                    {
+                        settleTimerId = idleTimers.schedule(settling.position(settling.first()), onSettleTimeout);
+                        doSignalIdleTimerTickIfNecessary();
+                    }
+                }
+
+                private void onSettleTimeout(
+                    long now)
+                {
+                    settleTimerId = NO_TIMER;
+
+                    if (!AmqpState.replyClosed(state))
+                    {
+                        final long traceId = supplyTraceId.getAsLong();
+                        final long authorization = this.authorization;
+
+                        while (!settling.isEmpty() && settling.position(settling.first()) <= now)
+                        {
+                            final long first = settling.first();
+                            final long last = lastOfRun(settling, now);
+
+                            doEncodeDispositionBatched(traceId, authorization, first, last, true, EMPTY_OCTETS, false);
+                            settling.settle(first, last);
+                        }
+
+                        if (!settling.isEmpty())
+                        {
+                            settleTimerId = idleTimers.schedule(settling.position(settling.first()), onSettleTimeout);
+                        }
+                    }
+                }
+
+                private void doCancelSettleTimeoutIfNecessary()
+                {
+                    if (settleTimerId != NO_TIMER)
+                    {
+                        idleTimers.cancel(settleTimerId);
+                        settleTimerId = NO_TIMER;
+                    }
+                }
+
+                private boolean onDecodeDisposition(
+                    long first,
+                    long last,
+                    boolean settled,
+                    boolean outcome,
+                    boolean redeliver)
+                {
+                    boolean settle = false;
+
+                    if (role == RECEIVER && redeliver && retainedSlot != NO_SLOT)
+                    {
+                        settle = !settled && unsettled.intersects(first, last);
+                        unsettled.settle(first, last);
+                        doScheduleRedeliveries(first, last);
+                    }
+                    else if (role == RECEIVER && (settled || (remoteSettleSecond && outcome)))
+                    {
+                        settle = !settled && unsettled.intersects(first, last);
+                        unsettled.settle(first, last);
+                        doDiscardRetained(first, last);
+                    }
+
+                    return settle;
+                }
+
+                private boolean doRetainDelivery(
+                    long traceId,
+                    long authorization,
+                    int redeliveries,
+                    OctetsFW extension,
+                    OctetsFW payload)
+                {
+                    final int extensionSize = extension.sizeof();
+                    final int payloadSize = payload != null ? payload.sizeof() : 0;
+                    final int recordSize = REDELIVERY_HEADER_SIZE + extensionSize + payloadSize;
+                    final int slotCapacity = bufferPool.slotCapacity();
+
+                    if (retainedSlot == NO_SLOT && recordSize <= slotCapacity)
+                    {
+                        retainedSlot = bufferPool.acquire(replyId);
+                    }
+
+                    final boolean retained = retainedSlot != NO_SLOT && retainedLimit + recordSize <= slotCapacity;
+                    if (retained)
+                    {
+                        final MutableDirectBuffer buffer = bufferPool.buffer(retainedSlot);
+                        final int offset = retainedLimit;
+                        final int extensionOffset = offset + REDELIVERY_HEADER_SIZE;
+
+                        buffer.putInt(offset + REDELIVERY_SIZE_OFFSET, recordSize);
+                        buffer.putLong(offset + REDELIVERY_DELIVERY_ID_OFFSET, deliveryId);
+                        buffer.putInt(offset + REDELIVERY_COUNT_OFFSET, redeliveries);
+                        buffer.putLong(offset + REDELIVERY_DEADLINE_OFFSET, NO_DEADLINE);
+                        buffer.putLong(offset + REDELIVERY_TRACE_ID_OFFSET, traceId);
+                        buffer.putLong(offset + REDELIVERY_AUTHORIZATION_OFFSET, authorization);
+                        buffer.putInt(offset + REDELIVERY_EXTENSION_SIZE_OFFSET, extensionSize);
+                        buffer.putInt(offset + REDELIVERY_PAYLOAD_SIZE_OFFSET, payload != null ? payloadSize : -1);
+                        buffer.putBytes(extensionOffset, extension.buffer(), extension.offset(), extensionSize);
+                        if (payload != null)
+                        {
+                            buffer.putBytes(extensionOffset + extensionSize, payload.buffer(), payload.offset(), payloadSize);
+                        }
+
+                        retainedLimit += recordSize;
+                    }
+
+                    return retained;
+                }
+
+                private void doDiscardRetained(
+                    long first,
+                    long last)
+                {
+                    if (retainedSlot != NO_SLOT)
+                    {
+                        final MutableDirectBuffer buffer = bufferPool.buffer(retainedSlot);
+
+                        int offset = 0;
+                        while (offset < retainedLimit)
+                        {
+                            final long deliveryId = buffer.getLong(offset + REDELIVERY_DELIVERY_ID_OFFSET);
+                            final long redeliverAt = buffer.getLong(offset + REDELIVERY_DEADLINE_OFFSET);
+
+                            if (redeliverAt == NO_DEADLINE && sequenceWithin(deliveryId, first, last))
+                            {
+                                removeRetained(buffer, offset);
+                            }
+                            else
+                            {
+                                offset += buffer.getInt(offset + REDELIVERY_SIZE_OFFSET);
+                            }
+                        }
+
+                        cleanupRetainedSlotIfNecessary();
+
+                        // settled copies free retained capacity that may have held back the reply window
+                        flushReplyWindow(supplyTraceId.getAsLong(), authorization);
+                    }
+                }
+
+                private void doScheduleRedeliveries(
+                    long first,
+                    long last)
+                {
+                    final MutableDirectBuffer buffer = bufferPool.buffer(retainedSlot);
+                    final long now = currentTimeMillis();
+
+                    int offset = 0;
+                    while (offset < retainedLimit)
+                    {
+                        final long deliveryId = buffer.getLong(offset + REDELIVERY_DELIVERY_ID_OFFSET);
+                        final int redeliveries = buffer.getInt(offset + REDELIVERY_COUNT_OFFSET);
+                        final long redeliverAt = buffer.getLong(offset + REDELIVERY_DEADLINE_OFFSET);
+
+                        if (redeliverAt == NO_DEADLINE && sequenceWithin(deliveryId, first, last) &&
+                            redeliveryBackoff.exhausted(redeliveries))
+                        {
+                            doDeadLetter(buffer, offset);
+                            removeRetained(buffer, offset);
+                        }
+                        else
+                        {
+                            if (redeliverAt == NO_DEADLINE && sequenceWithin(deliveryId, first, last))
+                            {
+                                final long deadline = now + redeliveryBackoff.delay(redeliveries);
+                                buffer.putLong(offset + REDELIVERY_DEADLINE_OFFSET, deadline);
+                                redeliveryDeadline = redeliveryDeadline == NO_DEADLINE ?
+                                    deadline : Math.min(redeliveryDeadline, deadline);
+                            }
+                            offset += buffer.getInt(offset + REDELIVERY_SIZE_OFFSET);
+                        }
+                    }
+
+                    cleanupRetainedSlotIfNecessary();
+                    doScheduleRedeliveryTimeoutIfNecessary();
+                }
+
+                private void doScheduleRedeliveryTimeoutIfNecessary()
+                {
+                    if (redeliveryDeadline == NO_DEADLINE)
+                    {
+                        doCancelRedeliveryTimeoutIfNecessary();
+                    }
+                    else if (redeliveryTimerId == NO_TIMER)
+                    {
+                        redeliveryTimerId = idleTimers.schedule(redeliveryDeadline, onRedeliveryTimeout);
+                        doSignalIdleTimerTickIfNecessary();
+                    }
+                    else
+                    {
+                        idleTimers.reschedule(redeliveryTimerId, redeliveryDeadline);
+                    }
+                }
+
+                private void onRedeliveryTimeout(
+                    long now)
+                {
+                    redeliveryTimerId = NO_TIMER;
+
+                    if (retainedSlot != NO_SLOT && !AmqpState.replyClosed(state))
+                    {
+                        final MutableDirectBuffer buffer = bufferPool.buffer(retainedSlot);
+
+                        // due deliveries join the parked queue only while link credit remains for them,
+                        // the rest are held until a flow grants credit or the parked queue drains
+                        long nextDeadline = NO_DEADLINE;
+                        boolean held = false;
+
+                        int offset = 0;
+                        while (offset < retainedLimit)
+                        {
+                            final long deadline = buffer.getLong(offset + REDELIVERY_DEADLINE_OFFSET);
+                            final boolean due = deadline != NO_DEADLINE && deadline <= now;
+                            if (due && pendingCount < linkCredit && doRedeliver(buffer, offset))
+                            {
+                                removeRetained(buffer, offset);
+                            }
+                            else
+                            {
+                                if (due)
+                                {
+                                    held = true;
+                                }
+                                else if (deadline != NO_DEADLINE && (nextDeadline == NO_DEADLINE || deadline < nextDeadline))
+                                {
+                                    nextDeadline = deadline;
+                                }
+                                offset += buffer.getInt(offset + REDELIVERY_SIZE_OFFSET);
+                            }
+                        }
+
+                        redeliveryDeadline = nextDeadline;
+                        redeliveriesHeld = held;
+
+                        flushPendingDeliveries();
+
+                        cleanupRetainedSlotIfNecessary();
+                        doScheduleRedeliveryTimeoutIfNecessary();
+                    }
+                }
+
+                private boolean doRedeliver(
+                    MutableDirectBuffer buffer,
+                    int offset)
+                {
+                    final long traceId = buffer.getLong(offset + REDELIVERY_TRACE_ID_OFFSET);
+                    final long authorization = buffer.getLong(offset + REDELIVERY_AUTHORIZATION_OFFSET);
+                    final int redeliveries = buffer.getInt(offset + REDELIVERY_COUNT_OFFSET);
+                    final int extensionSize = buffer.getInt(offset + REDELIVERY_EXTENSION_SIZE_OFFSET);
+                    final int payloadSize = buffer.getInt(offset + REDELIVERY_PAYLOAD_SIZE_OFFSET);
+
+                    final int extensionOffset = offset + REDELIVERY_HEADER_SIZE;
+                    final int payloadOffset = extensionOffset + extensionSize;
+                    final OctetsFW extension = redeliveryExtensionRO.wrap(buffer, extensionOffset, payloadOffset);
+                    final OctetsFW payload = payloadSize != -1 ?
+                        redeliveryPayloadRO.wrap(buffer, payloadOffset, payloadOffset + payloadSize) : null;
+                    // weighs the redelivery for the encode scheduler, link credit and reply window are accounted per delivery
+                    final int reserved = Math.max(payloadSize, 0) + encodePadding();
+
+                    return doPendingDelivery(traceId, reserved, authorization, redeliveries + 1, extension, payload);
+                }
+
+                private void doDeadLetter(
+                    MutableDirectBuffer buffer,
+                    int offset)
+                {
+                    final long authorization = buffer.getLong(offset + REDELIVERY_AUTHORIZATION_OFFSET);
+                    final RouteFW route = deadLetterAddress != null ?
+                        resolveRoute(routeId, authorization, deadLetterAddress, SEND_ONLY) : null;
+
+                    if (route != null)
+                    {
+                        final long traceId = buffer.getLong(offset + REDELIVERY_TRACE_ID_OFFSET);
+                        final int extensionSize = buffer.getInt(offset + REDELIVERY_EXTENSION_SIZE_OFFSET);
+                        final int payloadSize = buffer.getInt(offset + REDELIVERY_PAYLOAD_SIZE_OFFSET);
+
+                        final int extensionOffset = offset + REDELIVERY_HEADER_SIZE;
+                        final int payloadOffset = extensionOffset + extensionSize;
+                        final OctetsFW extension = redeliveryExtensionRO.wrap(buffer, extensionOffset, payloadOffset);
+                        final OctetsFW payload = payloadSize != -1 ?
+                            redeliveryPayloadRO.wrap(buffer, payloadOffset, payloadOffset + payloadSize) : null;
+
+                        new AmqpDeadLetterStream(route).doDeadLetter(traceId, authorization, extension, payload);
+                    }
+                }
+
+                private void removeRetained(
+                    MutableDirectBuffer buffer,
+                    int offset)
+                {
+                    final int nextOffset = offset + buffer.getInt(offset + REDELIVERY_SIZE_OFFSET);
+                    buffer.putBytes(offset, buffer, nextOffset, retainedLimit - nextOffset);
+                    retainedLimit -= nextOffset - offset;
+                }
+
+                private void cleanupRetainedSlotIfNecessary()
+                {
+                    if (retainedSlot != NO_SLOT && retainedLimit == 0)
+                    {
+                        releaseSlot(retainedSlot);
+                        retainedSlot = NO_SLOT;
+                        redeliveryDeadline = NO_DEADLINE;
+                        redeliveriesHeld = false;
+                    }
+                }
+
+                private int retainedCapacity()
+                {
+                    // unsettled deliveries keep a copy for redelivery, so the retained slot bounds the reply window
+                    return Math.max(bufferPool.slotCapacity() - retainedLimit, 0);
+                }
+
+                private void doRetryRedeliveriesIfNecessary()
+                {
+                    if (redeliveriesHeld && pendingCount < linkCredit)
+                    {
+                        // held deliveries are already due, retry on the next timer tick rather than re-entering the encoder
+                        redeliveriesHeld = false;
+                        redeliveryDeadline = currentTimeMillis();
+                        doScheduleRedeliveryTimeoutIfNecessary();
+                    }
+                }
+
+                private void doCancelRedeliveryTimeoutIfNecessary()
+                {
+                    if (redeliveryTimerId != NO_TIMER)
+                    {
+                        idleTimers.cancel(redeliveryTimerId);
+                        redeliveryTimerId = NO_TIMER;
+                    }
+                }
+
+                private void onDecodeSettlement(
+                    long first,
+                    long last)
+                {
+                    if (role == SENDER && settling != null)
+                    {
+                        settling.settle(first, last);
+
+                        if (settling.isEmpty())
+                        {
+                            doCancelSettleTimeoutIfNecessary();
+                        }
+                    }
+                }
 
-                    if (budgetId != 0L && debitorIndex == NO_DEBITOR_INDEX)
+                private int supplyRemoteLinkCredit()
+                {
+                    int credit = (int) (Math.min(bufferPool.slotCapacity(), initialBudget) /
+                                        Math.min(bufferPool.slotCapacity(), decodeMaxFrameSize));
+
+                    if (creditTuner != null)
                     {
-                        debitor = supplyDebitor.apply(budgetId);
-                        debitorIndex = debitor.acquire(budgetId, initialId, AmqpServer.this::decodeNetworkIfNecessary);
+                        credit = Math.min(credit, creditTuner.credit());
                     }
 
-                    flushInitialWindow(traceId, authorization);
+                    return credit;
+                }
 
-                    if (AmqpState.initialClosing(state) && !AmqpState.initialClosed(state))
+                private int flushRemoteLinkCredit()
+                {
+                    if (flowPending)
                     {
-                        doApplicationEnd(traceId, authorization, EMPTY_OCTETS);
+                        flowPending = false;
+
+                        if (AmqpState.replyOpened(state) && role == SENDER)
+                        {
+                            final int credit = supplyRemoteLinkCredit();
+                            final int replenish = credit - remoteLinkCredit;
+
+                            // peer still holds enough credit unless replenish crosses the threshold
+                            if (replenish < 0 || remoteLinkCredit == 0 && replenish > 0 ||
+                                replenish > 0 && replenish * 100L >= (long) credit * flowCreditThreshold)
+                            {
+                                this.remoteLinkCredit = credit;
+                                this.flowRequired = true;
+                            }
+                        }
                     }
+
+                    return remoteLinkCredit;
                 }
 
-                private void flushInitialWindow(
+                private void doEncodeLinkFlow(
                     long traceId,
                     long authorization)
                 {
-                    if (AmqpState.replyOpened(state) && role == SENDER)
-                    {
-                        this.remoteLinkCredit = (int) (Math.min(bufferPool.slotCapacity(), initialBudget) /
-                                                       Math.min(bufferPool.slotCapacity(), decodeMaxFrameSize));
-                        maximum.value = 0;
-                        links.values().forEach(l -> maximum.value += l.remoteLinkCredit);
-                        incomingWindow = maximum.value;
+                    final long creditLimit = (deliveryCount + remoteLinkCredit) & 0xFFFF_FFFFL;
+                    final boolean echo = creditTuner != null && creditTuner.onEchoRequested(currentTimeMillis(), creditLimit);
 
-                        doEncodeFlow(traceId, authorization, outgoingChannel, nextOutgoingId, nextIncomingId, incomingWindow,
-                            handle, deliveryCount, remoteLinkCredit);
-                    }
+                    this.flowRequired = false;
+
+                    doEncodeFlow(traceId, authorization, outgoingChannel, nextOutgoingId, nextIncomingId, incomingWindow,
+                        handle, deliveryCount, remoteLinkCredit, false, echo);
                 }
 
                 private void onApplicationReset(
@@ -3542,18 +6234,27 @@ public final class AmqpServerFactory implements StreamFactory
                     final long traceId = reset.traceId();
                     final long authorization = reset.authorization();
 
+                    if (role == SENDER && !unsettled.isEmpty())
+                    {
+                        // the delivery in flight when the application refused the stream is not offered again
+                        final long deliveryId = unsettled.first();
+                        doEncodeDispositionBatched(traceId, authorization, deliveryId, deliveryId, true, rejectedState, false);
+                        unsettled.settle(deliveryId, deliveryId);
+                    }
+                    doEncodeInitialDispositions(traceId, authorization, Long.MAX_VALUE, releasedState);
+
                     if (!AmqpState.replyOpened(state))
                     {
                         AmqpRole amqpRole = role == RECEIVER ? SENDER : RECEIVER;
                         if (amqpRole == RECEIVER)
                         {
                             doEncodeAttach(traceId, authorization, name, outgoingChannel, handle, amqpRole, MIXED, FIRST,
-                                addressFrom, null, deliveryCount, decodeMaxMessageSize);
+                                addressFrom, null, deliveryCount, decodeMaxMessageSize, null);
                         }
                         else
                         {
                             doEncodeAttach(traceId, authorization, name, outgoingChannel, handle, amqpRole, MIXED, FIRST,
-                                null, addressTo, deliveryCount, decodeMaxMessageSize);
+                                null, addressTo, deliveryCount, decodeMaxMessageSize, null);
                         }
                     }
 
@@ -3589,8 +6290,14 @@ public final class AmqpServerFactory implements StreamFactory
                         amqpReceiverSettleMode = amqpReceiverSettleMode(amqpBeginEx.receiverSettleMode().get());
                     }
 
+                    receiverSettleSecond = role == SENDER && amqpReceiverSettleMode == SECOND;
+                    if (role == RECEIVER)
+                    {
+                        presettled = amqpSenderSettleMode == SETTLED;
+                    }
+
                     doEncodeAttach(traceId, authorization, name, outgoingChannel, handle, amqpRole, amqpSenderSettleMode,
-                        amqpReceiverSettleMode, addressFrom, addressTo, deliveryCount, decodeMaxMessageSize);
+                        amqpReceiverSettleMode, addressFrom, addressTo, deliveryCount, decodeMaxMessageSize, recovered);
 
                     flushInitialWindow(traceId, authorization);
                 }
@@ -3606,7 +6313,13 @@ public final class AmqpServerFactory implements StreamFactory
                     final OctetsFW payload = data.payload();
 
                     this.replyBudget -= reserved;
-                    replySharedBudget -= reserved;
+                    this.replyReceived += reserved;
+                    onReplySharedBudgetConsumed(reserved);
+
+                    if (drainTimerId != NO_TIMER)
+                    {
+                        doSignalDrainTimeout();
+                    }
 
                     if (replyBudget < 0)
                     {
@@ -3620,19 +6333,261 @@ public final class AmqpServerFactory implements StreamFactory
                     }
                     else
                     {
-                        nextOutgoingId++;
-                        outgoingWindow--;
+                        if (linkCredit <= pendingCount && (flags & FLAG_INIT) == FLAG_INIT)
+                        {
+                            // hold new deliveries once parked ones have claimed the remaining link credit
+                            if ((flags & FLAG_FIN) == 0 ||
+                                !doPendingDelivery(traceId, reserved, authorization, 0, extension, payload))
+                            {
+                                doApplicationReset(traceId, authorization);
+                            }
+                        }
+                        // delivery ids are assigned when encoded, so park whole deliveries rather than encoded frames
+                        else if (encodeQueueId != NO_QUEUE &&
+                            (flags & FLAG_INIT_AND_FIN) == FLAG_INIT_AND_FIN &&
+                            (pendingCount > 0 || encodeSlot != NO_SLOT || !encodeScheduler.isEmpty()))
+                        {
+                            // reply window is bounded by free pending capacity, so overflow means the application overran it
+                            if (!doPendingDelivery(traceId, reserved, authorization, 0, extension, payload))
+                            {
+                                doApplicationReset(traceId, authorization);
+                            }
+                        }
+                        else
+                        {
+                            doEncodePendingDeliveries();
+                            doEncodeApplicationData(traceId, reserved, authorization, flags, extension, payload);
+                        }
+
+                        if (encodeQueueId != NO_QUEUE)
+                        {
+                            flushEncodeQueues();
+                        }
+                    }
+                }
+
+                private void doEncodeApplicationData(
+                    long traceId,
+                    int reserved,
+                    long authorization,
+                    int flags,
+                    OctetsFW extension,
+                    OctetsFW payload)
+                {
+                    nextOutgoingId++;
+                    outgoingWindow--;
+
+                    if ((flags & FLAG_INIT) == FLAG_INIT)
+                    {
+                        deliveryId++;
+                        deliveryCount = sequenceNext(deliveryCount);
+                        linkCredit--;
+                        onApplicationDataInit(traceId, reserved, authorization, flags, extension, payload);
+                    }
+                    else if (deliveryId != abortedDeliveryId)
+                    {
+                        onApplicationDataContOrFin(traceId, reserved, authorization, flags, payload);
+                    }
+                }
+
+                private boolean doPendingDelivery(
+                    long traceId,
+                    int reserved,
+                    long authorization,
+                    int redeliveries,
+                    OctetsFW extension,
+                    OctetsFW payload)
+                {
+                    final int extensionSize = extension.sizeof();
+                    final int payloadSize = payload != null ? payload.sizeof() : 0;
+                    final int recordSize = PENDING_HEADER_SIZE + extensionSize + payloadSize;
+                    final int slotCapacity = bufferPool.slotCapacity();
+
+                    if (pendingCount > 0 && pendingLimit + recordSize > slotCapacity)
+                    {
+                        compactPendingDeliveries();
+                    }
+
+                    if (pendingSlot == NO_SLOT && PENDING_RECORDS_OFFSET + recordSize <= slotCapacity)
+                    {
+                        pendingSlot = bufferPool.acquire(replyId);
+                        pendingLimit = PENDING_RECORDS_OFFSET;
+                    }
+
+                    final boolean parked = pendingSlot != NO_SLOT && pendingLimit + recordSize <= slotCapacity;
+                    if (parked)
+                    {
+                        final MutableDirectBuffer buffer = bufferPool.buffer(pendingSlot);
+                        final int offset = pendingLimit;
+                        final int extensionOffset = offset + PENDING_HEADER_SIZE;
+                        final int priority = !linkPrioritization ? DEFAULT_PRIORITY :
+                            relayBareMessages ? decodeHeaderPriority(payload) : decodePriority(extension);
+
+                        buffer.putInt(offset + PENDING_SIZE_OFFSET, recordSize);
+                        buffer.putByte(offset + PENDING_PRIORITY_OFFSET, (byte) priority);
+                        buffer.putLong(offset + PENDING_TRACE_ID_OFFSET, traceId);
+                        buffer.putLong(offset + PENDING_AUTHORIZATION_OFFSET, authorization);
+                        buffer.putInt(offset + PENDING_RESERVED_OFFSET, reserved);
+                        buffer.putInt(offset + PENDING_EXTENSION_SIZE_OFFSET, extensionSize);
+                        buffer.putInt(offset + PENDING_PAYLOAD_SIZE_OFFSET, payload != null ? payloadSize : -1);
+                        buffer.putInt(offset + PENDING_REDELIVERIES_OFFSET, redeliveries);
+                        buffer.putBytes(extensionOffset, extension.buffer(), extension.offset(), extensionSize);
+                        if (payload != null)
+                        {
+                            buffer.putBytes(extensionOffset + extensionSize, payload.buffer(), payload.offset(), payloadSize);
+                        }
+
+                        appendPendingDelivery(buffer, offset, priority);
 
-                        if ((flags & FLAG_INIT) == FLAG_INIT)
+                        pendingLimit += recordSize;
+                        pendingBytes += recordSize;
+                        pendingCount++;
+                        pendingReserved += reserved;
+                        encodeQueueBytes += reserved;
+
+                        if (encodeQueueId != NO_QUEUE && linkCredit > 0)
                         {
-                            deliveryId++;
-                            onApplicationDataInit(traceId, reserved, authorization, flags, extension, payload);
+                            encodeScheduler.activate(encodeQueueId);
                         }
-                        else if (deliveryId != abortedDeliveryId)
+                    }
+
+                    return parked;
+                }
+
+                private int pendingCapacity()
+                {
+                    // parked deliveries hold back reply window so the bounded pending slot applies backpressure
+                    return Math.max(bufferPool.slotCapacity() - PENDING_RECORDS_OFFSET - pendingBytes, 0);
+                }
+
+                private void doEncodePendingDeliveries()
+                {
+                    while (pendingCount > 0 && linkCredit > 0)
+                    {
+                        doEncodePendingDelivery();
+                    }
+                }
+
+                private void appendPendingDelivery(
+                    MutableDirectBuffer buffer,
+                    int offset,
+                    int priority)
+                {
+                    final int priorityMask = 1 << priority;
+                    if ((pendingPriorities & priorityMask) == 0)
+                    {
+                        buffer.putInt(PENDING_HEADS_OFFSET + priority * Integer.BYTES, offset);
+                        pendingPriorities |= priorityMask;
+                    }
+                    else
+                    {
+                        final int tail = buffer.getInt(PENDING_TAILS_OFFSET + priority * Integer.BYTES);
+                        buffer.putInt(tail + PENDING_NEXT_OFFSET, offset);
+                    }
+                    buffer.putInt(PENDING_TAILS_OFFSET + priority * Integer.BYTES, offset);
+                }
+
+                private int selectPendingDelivery()
+                {
+                    assert pendingPriorities != 0;
+
+                    final int priority = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(pendingPriorities);
+                    return bufferPool.buffer(pendingSlot).getInt(PENDING_HEADS_OFFSET + priority * Integer.BYTES);
+                }
+
+                private void compactPendingDeliveries()
+                {
+                    final MutableDirectBuffer buffer = bufferPool.buffer(pendingSlot);
+
+                    int limit = PENDING_RECORDS_OFFSET;
+                    int progress = PENDING_RECORDS_OFFSET;
+                    pendingPriorities = 0;
+
+                    while (progress < pendingLimit)
+                    {
+                        final int recordSize = buffer.getInt(progress + PENDING_SIZE_OFFSET);
+                        final int priority = buffer.getByte(progress + PENDING_PRIORITY_OFFSET);
+                        if (priority != NO_PRIORITY)
                         {
-                            onApplicationDataContOrFin(traceId, reserved, authorization, flags, payload);
+                            if (progress != limit)
+                            {
+                                buffer.putBytes(limit, buffer, progress, recordSize);
+                            }
+                            appendPendingDelivery(buffer, limit, priority);
+                            limit += recordSize;
                         }
+                        progress += recordSize;
+                    }
+
+                    assert limit - PENDING_RECORDS_OFFSET == pendingBytes;
+                    pendingLimit = limit;
+                }
+
+                private void doEncodePendingDelivery()
+                {
+                    assert pendingCount > 0;
+
+                    final MutableDirectBuffer buffer = bufferPool.buffer(pendingSlot);
+                    final int offset = selectPendingDelivery();
+                    final int priority = buffer.getByte(offset + PENDING_PRIORITY_OFFSET);
+                    final int priorityTail = buffer.getInt(PENDING_TAILS_OFFSET + priority * Integer.BYTES);
+
+                    if (offset == priorityTail)
+                    {
+                        pendingPriorities &= ~(1 << priority);
+                    }
+                    else
+                    {
+                        final int next = buffer.getInt(offset + PENDING_NEXT_OFFSET);
+                        buffer.putInt(PENDING_HEADS_OFFSET + priority * Integer.BYTES, next);
+                    }
+
+                    final int recordSize = buffer.getInt(offset + PENDING_SIZE_OFFSET);
+                    final long traceId = buffer.getLong(offset + PENDING_TRACE_ID_OFFSET);
+                    final long authorization = buffer.getLong(offset + PENDING_AUTHORIZATION_OFFSET);
+                    final int reserved = buffer.getInt(offset + PENDING_RESERVED_OFFSET);
+                    final int extensionSize = buffer.getInt(offset + PENDING_EXTENSION_SIZE_OFFSET);
+                    final int payloadSize = buffer.getInt(offset + PENDING_PAYLOAD_SIZE_OFFSET);
+                    final int redeliveries = buffer.getInt(offset + PENDING_REDELIVERIES_OFFSET);
+
+                    final int extensionOffset = offset + PENDING_HEADER_SIZE;
+                    final int payloadOffset = extensionOffset + extensionSize;
+                    final OctetsFW extension = pendingExtensionRO.wrap(buffer, extensionOffset, payloadOffset);
+                    final OctetsFW payload = payloadSize != -1 ?
+                        pendingPayloadRO.wrap(buffer, payloadOffset, payloadOffset + payloadSize) : null;
+
+                    buffer.putByte(offset + PENDING_PRIORITY_OFFSET, (byte) NO_PRIORITY);
+                    pendingBytes -= recordSize;
+                    pendingCount--;
+                    pendingReserved -= reserved;
+                    encodeQueueBytes -= reserved;
+
+                    encodeRedeliveries = redeliveries;
+                    doEncodeApplicationData(traceId, reserved, authorization, FLAG_INIT_AND_FIN, extension, payload);
+                    encodeRedeliveries = 0;
+
+                    if (pendingCount == 0)
+                    {
+                        cleanupPendingSlot();
+                        doRetryRedeliveriesIfNecessary();
                     }
+
+                    flushReplyWindow(traceId, authorization);
+                }
+
+                private void cleanupPendingSlot()
+                {
+                    if (pendingSlot != NO_SLOT)
+                    {
+                        releaseSlot(pendingSlot);
+                        pendingSlot = NO_SLOT;
+                    }
+                    encodeQueueBytes -= pendingReserved;
+                    pendingReserved = 0;
+                    pendingLimit = 0;
+                    pendingBytes = 0;
+                    pendingCount = 0;
+                    pendingPriorities = 0;
                 }
 
                 private void onApplicationDataInit(
@@ -3651,16 +6606,16 @@ public final class AmqpServerFactory implements StreamFactory
 
                     final AmqpBodyKind bodyKind = dataEx.bodyKind().get();
                     final OctetsFW deliveryTagBytes = dataEx.deliveryTag().bytes();
-                    final BoundedOctetsFW deliveryTag =
-                            amqpBinaryRW.wrap(stringBuffer, 0, stringBuffer.capacity())
-                                .set(deliveryTagBytes.value(), 0, deliveryTagBytes.sizeof())
-                                .build()
-                                .get();
+                    final boolean generatedTag = deliveryTagBytes.sizeof() == 0;
+                    final DirectBuffer deliveryTagBuffer = generatedTag ? generatedTagBuffer : deliveryTagBytes.buffer();
+                    final int deliveryTagSize = generatedTag ? generateDeliveryTag(deliveryId) : deliveryTagBytes.sizeof();
+                    final int deliveryTagOffset = generatedTag ? Long.BYTES - deliveryTagSize : deliveryTagBytes.offset();
                     final long messageFormat = dataEx.messageFormat();
-                    final boolean settled = isSettled(dataEx.flags());
+                    final boolean settled = presettled || isSettled(dataEx.flags());
 
-                    final OctetsFW messageFragment = amqpMessageHelper.encodeFragmentInit(
-                            deferred, extension, payload);
+                    final OctetsFW messageFragment = relayBareMessages ?
+                            amqpMessageHelper.encodeBareMessageInit(payload) :
+                            amqpMessageHelper.encodeFragmentInit(deferred, extension, payload);
 
                     this.encodeBodyKind = bodyKind;
                     final int performativeSize = transferType.sizeof();
@@ -3669,7 +6624,7 @@ public final class AmqpServerFactory implements StreamFactory
                             .wrap(frameBuffer, FRAME_HEADER_SIZE + performativeSize, frameBuffer.capacity())
                             .handle(handle)
                             .deliveryId(deliveryId)
-                            .deliveryTag(deliveryTag)
+                            .deliveryTag(deliveryTagBuffer, deliveryTagOffset, deliveryTagSize)
                             .messageFormat(messageFormat)
                             .settled(settled ? 1 : 0);
 
@@ -3678,12 +6633,18 @@ public final class AmqpServerFactory implements StreamFactory
                         transferBuilder.more(1);
                     }
 
-                    final DirectBuffer fragmentBuffer = messageFragment.buffer();
-                    final int fragmentOffset = messageFragment.offset();
-                    final int fragmentLimit = messageFragment.limit();
-                    int fragmentSize = fragmentLimit - fragmentOffset;
+                    final OctetsFW messageBody = amqpMessageHelper.encodedBody;
+                    int fragmentSize = messageFragment.sizeof() + messageBody.sizeof();
+
+                    boolean aborted = encodeMaxMessageSize > 0 && fragmentSize + deferred > encodeMaxMessageSize;
 
-                    if (encodeMaxMessageSize > 0 && fragmentSize + deferred > encodeMaxMessageSize)
+                    if (!settled && !aborted)
+                    {
+                        aborted = !unsettled.add(deliveryId, deliveryTagBuffer, deliveryTagOffset, deliveryTagSize,
+                            replyReceived);
+                    }
+
+                    if (aborted)
                     {
                         transferBuilder.aborted(1);
                         abortedDeliveryId = deliveryId;
@@ -3696,7 +6657,7 @@ public final class AmqpServerFactory implements StreamFactory
                     if (frameSize <= encodeMaxFrameSize)
                     {
                         doEncodeTransfer(traceId, authorization, outgoingChannel, transfer,
-                                fragmentBuffer, fragmentOffset, fragmentSize);
+                                messageFragment, messageBody, 0, fragmentSize);
                     }
                     else
                     {
@@ -3704,22 +6665,28 @@ public final class AmqpServerFactory implements StreamFactory
                                 .wrap(frameBuffer, FRAME_HEADER_SIZE + performativeSize, frameBuffer.capacity())
                                 .handle(handle)
                                 .deliveryId(deliveryId)
-                                .deliveryTag(deliveryTag)
+                                .deliveryTag(deliveryTagBuffer, deliveryTagOffset, deliveryTagSize)
                                 .messageFormat(messageFormat)
                                 .settled(settled ? 1 : 0)
                                 .more(1)
                                 .build();
 
                         int fragmentSizeInit = encodeMaxFrameSize - FRAME_HEADER_SIZE - performativeSize - transferInit.sizeof();
-                        int fragmentProgress = fragmentOffset;
 
                         doEncodeTransfer(traceId, authorization, outgoingChannel,
-                                transferInit, fragmentBuffer, fragmentProgress, fragmentSizeInit);
-                        fragmentProgress += fragmentSizeInit;
+                                transferInit, messageFragment, messageBody, 0, fragmentSizeInit);
 
                         doEncodeTransferFragments(
                             traceId, authorization, outgoingChannel, handle, more,
-                            fragmentBuffer, fragmentProgress, fragmentLimit);
+                            messageFragment, messageBody, fragmentSizeInit);
+                    }
+
+                    if (redeliveryBackoff != null && !settled && !more && abortedDeliveryId != deliveryId &&
+                        !doRetainDelivery(traceId, authorization, encodeRedeliveries, extension, payload) &&
+                        !AmqpState.replyClosed(state))
+                    {
+                        // without a retained copy a released delivery would be lost, so stop the application instead
+                        doApplicationReset(traceId, authorization);
                     }
                 }
 
@@ -3733,7 +6700,9 @@ public final class AmqpServerFactory implements StreamFactory
                     final boolean aborted = (flags & FLAG_INCOMPLETE) == FLAG_INCOMPLETE;
                     final boolean more = (flags & FLAG_FIN) == 0 && !aborted;
 
-                    OctetsFW messageFragment = aborted ? EMPTY_OCTETS : amqpMessageHelper.encodeFragment(encodeBodyKind, payload);
+                    OctetsFW messageFragment = aborted ? EMPTY_OCTETS :
+                        relayBareMessages ? amqpMessageHelper.encodeBareMessage(payload) :
+                        amqpMessageHelper.encodeFragment(encodeBodyKind, payload);
 
                     final int performativeSize = transferType.sizeof();
                     final AmqpTransferFW.Builder transferBuilder = amqpTransferRW
@@ -3747,25 +6716,25 @@ public final class AmqpServerFactory implements StreamFactory
                     if (aborted)
                     {
                         transferBuilder.aborted(1);
+
+                        unsettled.settle(deliveryId, deliveryId);
                     }
 
-                    final DirectBuffer fragmentBuffer = messageFragment.buffer();
-                    final int fragmentOffset = messageFragment.offset();
-                    final int fragmentLimit = messageFragment.limit();
-                    final int fragmentSize = fragmentLimit - fragmentOffset;
+                    final OctetsFW messageBody = aborted ? EMPTY_OCTETS : amqpMessageHelper.encodedBody;
+                    final int fragmentSize = messageFragment.sizeof() + messageBody.sizeof();
                     final AmqpTransferFW transfer = transferBuilder.build();
                     final int frameSize = FRAME_HEADER_SIZE + performativeSize + transfer.sizeof() + fragmentSize;
 
                     if (frameSize <= encodeMaxFrameSize)
                     {
                         doEncodeTransfer(traceId, authorization, outgoingChannel, transfer,
-                            fragmentBuffer, fragmentOffset, fragmentSize);
+                            messageFragment, messageBody, 0, fragmentSize);
                     }
                     else
                     {
                         doEncodeTransferFragments(
                             traceId, authorization, outgoingChannel, handle, more,
-                            fragmentBuffer, fragmentOffset, fragmentLimit);
+                            messageFragment, messageBody, 0);
                     }
                 }
 
@@ -3777,6 +6746,7 @@ public final class AmqpServerFactory implements StreamFactory
                     final long traceId = end.traceId();
                     final long authorization = end.authorization();
 
+                    doEncodePendingDeliveries();
                     doEncodeDetach(traceId, authorization, null, decodeChannel, handle);
                     cleanup(traceId, authorization);
                 }
@@ -3789,6 +6759,7 @@ public final class AmqpServerFactory implements StreamFactory
                     final long traceId = abort.traceId();
                     final long authorization = abort.authorization();
 
+                    doEncodeInitialDispositions(traceId, authorization, Long.MAX_VALUE, releasedState);
                     cleanupCorrelationIfNecessary();
                     cleanup(traceId, authorization);
                 }
@@ -3823,10 +6794,12 @@ public final class AmqpServerFactory implements StreamFactory
                     if (AmqpState.replyOpened(state))
                     {
                         final int maxFrameSize = encodeMaxFrameSize;
-                        final int slotCapacity = bufferPool.slotCapacity();
-                        final int maxFrameCount = (slotCapacity + maxFrameSize - 1) / maxFrameSize;
-                        final int padding = PAYLOAD_HEADER_SIZE + (TRANSFER_HEADER_SIZE * maxFrameCount);
-                        final int newReplyBudget = linkCredit * encodeMaxFrameSize;
+                        final int padding = encodePadding();
+                        // parked deliveries each spend link credit when encoded, so their share is withheld from the application
+                        final int linkBudget = Math.max(linkCredit - pendingCount, 0) * encodeMaxFrameSize;
+                        final int queueBudget = encodeQueueId != NO_QUEUE ? Math.min(linkBudget, pendingCapacity()) : linkBudget;
+                        final int newReplyBudget = redeliveryBackoff != null ?
+                            Math.min(queueBudget, retainedCapacity()) : queueBudget;
                         final int credit = newReplyBudget - replyBudget;
                         if (credit > 0)
                         {
@@ -3837,6 +6810,14 @@ public final class AmqpServerFactory implements StreamFactory
                     }
                 }
 
+                private int encodePadding()
+                {
+                    final int maxFrameSize = encodeMaxFrameSize;
+                    final int slotCapacity = bufferPool.slotCapacity();
+                    final int maxFrameCount = (slotCapacity + maxFrameSize - 1) / maxFrameSize;
+                    return PAYLOAD_HEADER_SIZE + (TRANSFER_HEADER_SIZE * maxFrameCount);
+                }
+
                 private void doApplicationReset(
                     long traceId,
                     long authorization)
@@ -3879,51 +6860,266 @@ public final class AmqpServerFactory implements StreamFactory
                     doApplicationResetIfNecessary(traceId, authorization);
                     doCancelReadIdleTimeoutIfNecessary();
                     doCancelWriteIdleTimeoutIfNecessary();
+                    doCancelDrainTimeoutIfNecessary();
+                    doStoreRecoveryIfNecessary();
+                    doCancelSettleTimeoutIfNecessary();
+                    doCancelRedeliveryTimeoutIfNecessary();
+                    cleanupEncodeQueueIfNecessary();
+                    unsettled.clear();
+                    retainedLimit = 0;
+                    cleanupRetainedSlotIfNecessary();
+                    if (settling != null)
+                    {
+                        settling.clear();
+                    }
+                    recovered = null;
+                }
+
+                private int drainEncodeQueue(
+                    int limit)
+                {
+                    final int maxLength = Math.min(limit, AmqpServer.this.replyBudget - replyPadding);
+
+                    int encoded = 0;
+                    while (pendingCount > 0 && linkCredit > 0 && encodeSlot == NO_SLOT)
+                    {
+                        // first delivery may overflow into the network encode slot rather than stall
+                        final int size = sizeofEncodeQueue();
+                        if (encoded + size > limit || encoded > 0 && encoded + size > maxLength)
+                        {
+                            break;
+                        }
+
+                        doEncodePendingDelivery();
+                        encoded += size;
+                    }
+
+                    return encoded;
+                }
+
+                private int sizeofEncodeQueue()
+                {
+                    return pendingCount > 0 && linkCredit > 0 ?
+                        Math.max(bufferPool.buffer(pendingSlot).getInt(selectPendingDelivery() + PENDING_RESERVED_OFFSET), 1) : 0;
+                }
+
+                private void cleanupEncodeQueueIfNecessary()
+                {
+                    if (encodeQueueId != NO_QUEUE)
+                    {
+                        cleanupPendingSlot();
+                        encodeScheduler.remove(encodeQueueId);
+                        encodeQueues.remove(encodeQueueId);
+                        encodeQueueId = NO_QUEUE;
+                    }
                 }
 
-                private void doCancelReadIdleTimeoutIfNecessary()
+                private boolean cleanupCorrelationIfNecessary()
                 {
-                    if (readIdleTimeoutId != NO_CANCEL_ID)
+                    final MessageConsumer correlated = correlations.remove(replyId);
+                    if (correlated != null)
                     {
-                        signaler.cancel(readIdleTimeoutId);
-                        readIdleTimeoutId = NO_CANCEL_ID;
+                        router.clearThrottle(replyId);
                     }
+
+                    return correlated != null;
+                }
+            }
+        }
+    }
+
+    private int generateDeliveryTag(
+        long deliveryId)
+    {
+        // delivery ids are unique among unsettled deliveries, so the shortest big-endian form is a valid tag
+        generatedTagBuffer.putLong(0, deliveryId, BIG_ENDIAN);
+
+        return Math.max(Long.BYTES - Long.numberOfLeadingZeros(deliveryId) / Byte.SIZE, 1);
+    }
+
+    private final class AmqpDeadLetterStream
+    {
+        private final MessageConsumer application;
+        private final long routeId;
+        private final long initialId;
+        private final long replyId;
+
+        private int slot = NO_SLOT;
+        private int extensionSize;
+        private int payloadSize;
+        private long traceId;
+        private long authorization;
+        private int initialBudget;
+        private int state;
+
+        private AmqpDeadLetterStream(
+            RouteFW route)
+        {
+            this.routeId = route.correlationId();
+            this.initialId = supplyInitialId.applyAsLong(routeId);
+            this.replyId = supplyReplyId.applyAsLong(initialId);
+            this.application = router.supplyReceiver(initialId);
+        }
+
+        private void doDeadLetter(
+            long traceId,
+            long authorization,
+            OctetsFW extension,
+            OctetsFW payload)
+        {
+            final int extensionSize = extension.sizeof();
+            final int payloadSize = payload != null ? payload.sizeof() : -1;
+
+            slot = bufferPool.acquire(initialId);
+            if (slot != NO_SLOT && extensionSize + Math.max(payloadSize, 0) <= bufferPool.slotCapacity())
+            {
+                final MutableDirectBuffer buffer = bufferPool.buffer(slot);
+                buffer.putBytes(0, extension.buffer(), extension.offset(), extensionSize);
+                if (payload != null)
+                {
+                    buffer.putBytes(extensionSize, payload.buffer(), payload.offset(), payloadSize);
                 }
 
-                private void doCancelWriteIdleTimeoutIfNecessary()
+                this.extensionSize = extensionSize;
+                this.payloadSize = payloadSize;
+                this.traceId = traceId;
+                this.authorization = authorization;
+
+                router.setThrottle(initialId, this::onApplication);
+                correlations.put(replyId, this::onApplication);
+
+                final AmqpBeginExFW beginEx = amqpBeginExRW.wrap(extraBuffer, 0, extraBuffer.capacity())
+                    .typeId(amqpTypeId)
+                    .address((String8FW) deadLetterAddress)
+                    .capabilities(r -> r.set(SEND_ONLY))
+                    .senderSettleMode(s -> s.set(amqpSenderSettleMode(SETTLED)))
+                    .receiverSettleMode(r -> r.set(amqpReceiverSettleMode(FIRST)))
+                    .build();
+
+                state = AmqpState.openingInitial(state);
+                doBegin(application, routeId, initialId, traceId, authorization, 0L, beginEx);
+            }
+            else
+            {
+                cleanupSlotIfNecessary();
+            }
+        }
+
+        private void onApplication(
+            int msgTypeId,
+            DirectBuffer buffer,
+            int index,
+            int length)
+        {
+            switch (msgTypeId)
+            {
+            case WindowFW.TYPE_ID:
+                final WindowFW window = windowRO.wrap(buffer, index, index + length);
+                onApplicationWindow(window);
+                break;
+            case ResetFW.TYPE_ID:
+                state = AmqpState.closeInitial(state);
+                cleanup();
+                break;
+            case BeginFW.TYPE_ID:
+                state = AmqpState.openReply(state);
+                break;
+            case DataFW.TYPE_ID:
+                doApplicationResetIfNecessary();
+                break;
+            case EndFW.TYPE_ID:
+            case AbortFW.TYPE_ID:
+                state = AmqpState.closeReply(state);
+                break;
+            }
+        }
+
+        private void onApplicationWindow(
+            WindowFW window)
+        {
+            final int reserved = extensionSize + Math.max(payloadSize, 0) + window.padding();
+
+            state = AmqpState.openInitial(state);
+            initialBudget += window.credit();
+
+            if (slot != NO_SLOT && reserved <= initialBudget)
+            {
+                final MutableDirectBuffer buffer = bufferPool.buffer(slot);
+                final OctetsFW extension = redeliveryExtensionRO.wrap(buffer, 0, extensionSize);
+                final OctetsFW payload = payloadSize != -1 ?
+                    redeliveryPayloadRO.wrap(buffer, extensionSize, extensionSize + payloadSize) : null;
+
+                initialBudget -= reserved;
+
+                doData(application, routeId, initialId, traceId, authorization, FLAG_INIT_AND_FIN, window.budgetId(),
+                    reserved, payload, extension);
+                doEnd(application, routeId, initialId, traceId, authorization, EMPTY_OCTETS);
+                state = AmqpState.closeInitial(state);
+                cleanup();
+            }
+        }
+
+        private void doApplicationResetIfNecessary()
+        {
+            if (AmqpState.replyOpening(state) && !AmqpState.replyClosed(state))
+            {
+                state = AmqpState.closeReply(state);
+                doReset(application, routeId, replyId, traceId, authorization, EMPTY_OCTETS);
+            }
+        }
+
+        private void cleanup()
+        {
+            cleanupSlotIfNecessary();
+
+            if (AmqpState.initialClosed(state))
+            {
+                router.clearThrottle(initialId);
+
+                if (AmqpState.replyOpening(state))
                 {
-                    if (writeIdleTimeoutId != NO_CANCEL_ID)
-                    {
-                        signaler.cancel(writeIdleTimeoutId);
-                        writeIdleTimeoutId = NO_CANCEL_ID;
-                    }
+                    doApplicationResetIfNecessary();
                 }
-
-                private boolean cleanupCorrelationIfNecessary()
+                else
                 {
-                    final MessageConsumer correlated = correlations.remove(replyId);
-                    if (correlated != null)
-                    {
-                        router.clearThrottle(replyId);
-                    }
-
-                    return correlated != null;
+                    correlations.remove(replyId);
                 }
             }
         }
+
+        private void cleanupSlotIfNecessary()
+        {
+            if (slot != NO_SLOT)
+            {
+                releaseSlot(slot);
+                slot = NO_SLOT;
+            }
+        }
     }
 
     private final class AmqpMessageEncoder
     {
-        private final AmqpMapFW.Builder<AmqpValueFW, AmqpValueFW, AmqpValueFW.Builder, AmqpValueFW.Builder> annotationsRW =
-            new AmqpMapFW.Builder<>(new AmqpValueFW(), new AmqpValueFW(), new AmqpValueFW.Builder(),
-                new AmqpValueFW.Builder());
-        private final AmqpApplicationPropertiesFW.Builder<AmqpSimpleTypeFW, AmqpSimpleTypeFW.Builder>
-            applicationPropertiesRW = new AmqpApplicationPropertiesFW.Builder<>(new AmqpStringFW(), new AmqpSimpleTypeFW(),
-            new AmqpStringFW.Builder(), new AmqpSimpleTypeFW.Builder());
+        private final Flyweight.Builder.Visitor encodeMessagePropertiesList = this::encodeMessagePropertiesList;
+        private final Flyweight.Builder.Visitor encodeMessageAnnotationsMap = this::encodeMessageAnnotationsMap;
+        private final Flyweight.Builder.Visitor encodeApplicationPropertiesMap = this::encodeApplicationPropertiesMap;
+        private final Consumer<AmqpAnnotationFW> sizeofMessageAnnotation = this::sizeofMessageAnnotation;
+        private final Consumer<AmqpAnnotationFW> encodeMessageAnnotation = this::encodeMessageAnnotation;
+        private final Consumer<AmqpApplicationPropertyFW> sizeofApplicationProperty = this::sizeofApplicationProperty;
+        private final Consumer<AmqpApplicationPropertyFW> encodeApplicationProperty = this::encodeApplicationProperty;
+
+        private final OctetsFW encodedBodyRO = new OctetsFW();
+        private final OctetsFW encodedHeaderRO = new OctetsFW();
 
         private AmqpSectionEncoder sectionEncoder;
         private int encodableBytes;
+        private OctetsFW encodedBody = EMPTY_OCTETS;
+
+        private AmqpPropertiesFW encodableProperties;
+        private Array32FW<AmqpAnnotationFW> encodableAnnotations;
+        private Array32FW<AmqpApplicationPropertyFW> encodableApplicationProperties;
+        private int encodableEntriesSize;
+        private MutableDirectBuffer encodeBuffer;
+        private int encodeProgress;
 
         private OctetsFW encodeFragmentInit(
             int deferred,
@@ -3931,6 +7127,7 @@ public final class AmqpServerFactory implements StreamFactory
             OctetsFW payload)
         {
             messageFragmentRW.wrap(extraBuffer, 0, extraBuffer.capacity());
+            this.encodedBody = EMPTY_OCTETS;
 
             final AmqpDataExFW dataEx = extension.get(amqpDataExRO::tryWrap);
             assert dataEx != null;
@@ -3951,6 +7148,50 @@ public final class AmqpServerFactory implements StreamFactory
             }
         }
 
+        private OctetsFW encodeBareMessageInit(
+            OctetsFW payload)
+        {
+            OctetsFW messageFragment = encodeBareMessage(payload);
+
+            if (payload != null)
+            {
+                // delivery annotations are per hop, so send the header and bare message slices around them
+                final DirectBuffer buffer = payload.buffer();
+                final int offset = payload.offset();
+                final int limit = payload.limit();
+
+                int headerLimit = offset;
+                AmqpSectionTypeFW sectionType = amqpSectionTypeRO.tryWrap(buffer, offset, limit);
+                if (sectionType != null && sectionType.get() == AmqpSectionType.HEADER)
+                {
+                    final AmqpHeaderFW header = headersRO.tryWrap(buffer, sectionType.limit(), limit);
+                    headerLimit = header != null ? header.limit() : offset;
+                    sectionType = header != null ? amqpSectionTypeRO.tryWrap(buffer, headerLimit, limit) : null;
+                }
+
+                if (sectionType != null && sectionType.get() == AmqpSectionType.DELIVERY_ANNOTATIONS)
+                {
+                    final AmqpMapFW<AmqpValueFW, AmqpValueFW> deliveryAnnotations =
+                        deliveryAnnotationsRO.tryWrap(buffer, sectionType.limit(), limit);
+
+                    if (deliveryAnnotations != null)
+                    {
+                        messageFragment = encodedHeaderRO.wrap(buffer, offset, headerLimit);
+                        this.encodedBody = encodedBodyRO.wrap(buffer, deliveryAnnotations.limit(), limit);
+                    }
+                }
+            }
+
+            return messageFragment;
+        }
+
+        private OctetsFW encodeBareMessage(
+            OctetsFW payload)
+        {
+            this.encodedBody = EMPTY_OCTETS;
+            return payload != null ? payload : EMPTY_OCTETS;
+        }
+
         private OctetsFW encodeFragment(
             AmqpBodyKind bodyKind,
             OctetsFW payload)
@@ -3958,6 +7199,7 @@ public final class AmqpServerFactory implements StreamFactory
             assert bodyKind != null;
 
             messageFragmentRW.wrap(extraBuffer, 0, extraBuffer.capacity());
+            this.encodedBody = EMPTY_OCTETS;
 
             this.sectionEncoder = lookupBodyBytesEncoder(bodyKind);
 
@@ -4059,67 +7301,163 @@ public final class AmqpServerFactory implements StreamFactory
             {
                 AmqpDescribedTypeFW type = messagePropertiesSectionType;
                 messageFragmentRW.put(type.buffer(), type.offset(), type.sizeof());
-                messageFragmentRW.put((b, o, l) ->
-                {
-                    AmqpMessagePropertiesFW.Builder amqpProperties = amqpPropertiesRW.wrap(b, o, l);
-                    if (properties.hasMessageId())
-                    {
-                        amqpProperties.messageId(properties.messageId().stringtype());
-                    }
-                    if (properties.hasUserId())
-                    {
-                        final BoundedOctetsFW userId = amqpBinaryRW.wrap(stringBuffer, 0, stringBuffer.capacity())
-                            .set(properties.userId().bytes().value(), 0, properties.userId().length())
-                            .build()
-                            .get();
-                        amqpProperties.userId(userId);
-                    }
-                    if (properties.hasTo())
-                    {
-                        amqpProperties.to(properties.to());
-                    }
-                    if (properties.hasSubject())
-                    {
-                        amqpProperties.subject(properties.subject());
-                    }
-                    if (properties.hasReplyTo())
-                    {
-                        amqpProperties.replyTo(properties.replyTo());
-                    }
-                    if (properties.hasCorrelationId())
-                    {
-                        amqpProperties.correlationId(properties.correlationId().stringtype());
-                    }
-                    if (properties.hasContentType())
-                    {
-                        amqpProperties.contentType(properties.contentType());
-                    }
-                    if (properties.hasContentEncoding())
-                    {
-                        amqpProperties.contentEncoding(properties.contentEncoding());
-                    }
-                    if (properties.hasAbsoluteExpiryTime())
-                    {
-                        amqpProperties.absoluteExpiryTime(properties.absoluteExpiryTime());
-                    }
-                    if (properties.hasCreationTime())
-                    {
-                        amqpProperties.creationTime(properties.creationTime());
-                    }
-                    if (properties.hasGroupId())
-                    {
-                        amqpProperties.groupId(properties.groupId());
-                    }
-                    if (properties.hasGroupSequence())
-                    {
-                        amqpProperties.groupSequence(properties.groupSequence());
-                    }
-                    if (properties.hasReplyToGroupId())
-                    {
-                        amqpProperties.replyToGroupId(properties.replyToGroupId());
-                    }
-                    return amqpProperties.build().sizeof();
-                });
+
+                this.encodableProperties = properties;
+                messageFragmentRW.put(encodeMessagePropertiesList);
+                this.encodableProperties = null;
+            }
+        }
+
+        private int encodeMessagePropertiesList(
+            MutableDirectBuffer buffer,
+            int offset,
+            int maxLimit)
+        {
+            final AmqpPropertiesFW properties = encodableProperties;
+
+            int fieldCount = MESSAGE_PROPERTIES_FIELD_COUNT;
+            while (fieldCount > 0 && !hasMessageProperty(properties, fieldCount - 1))
+            {
+                fieldCount--;
+            }
+
+            int fieldsSize = 0;
+            for (int index = 0; index < fieldCount; index++)
+            {
+                fieldsSize += sizeofMessageProperty(properties, index);
+            }
+
+            int progress = encodeCompoundHeader(LIST1, LIST4, buffer, offset, fieldsSize, fieldCount);
+            assert progress + fieldsSize <= maxLimit;
+
+            for (int index = 0; index < fieldCount; index++)
+            {
+                progress = encodeMessageProperty(properties, index, buffer, progress);
+            }
+
+            return progress - offset;
+        }
+
+        private boolean hasMessageProperty(
+            AmqpPropertiesFW properties,
+            int index)
+        {
+            switch (index)
+            {
+            case 0:
+                return properties.hasMessageId();
+            case 1:
+                return properties.hasUserId();
+            case 2:
+                return properties.hasTo();
+            case 3:
+                return properties.hasSubject();
+            case 4:
+                return properties.hasReplyTo();
+            case 5:
+                return properties.hasCorrelationId();
+            case 6:
+                return properties.hasContentType();
+            case 7:
+                return properties.hasContentEncoding();
+            case 8:
+                return properties.hasAbsoluteExpiryTime();
+            case 9:
+                return properties.hasCreationTime();
+            case 10:
+                return properties.hasGroupId();
+            case 11:
+                return properties.hasGroupSequence();
+            case 12:
+                return properties.hasReplyToGroupId();
+            default:
+                throw new IllegalArgumentException("Unexpected property index: " + index);
+            }
+        }
+
+        private int sizeofMessageProperty(
+            AmqpPropertiesFW properties,
+            int index)
+        {
+            if (!hasMessageProperty(properties, index))
+            {
+                return Byte.BYTES;
+            }
+
+            switch (index)
+            {
+            case 0:
+                return sizeofVariableLength(properties.messageId().stringtype().length());
+            case 1:
+                return sizeofVariableLength(properties.userId().bytes().sizeof());
+            case 2:
+                return sizeofVariableLength(properties.to().length());
+            case 3:
+                return sizeofVariableLength(properties.subject().length());
+            case 4:
+                return sizeofVariableLength(properties.replyTo().length());
+            case 5:
+                return sizeofVariableLength(properties.correlationId().stringtype().length());
+            case 6:
+                return sizeofVariableLength(properties.contentType().length());
+            case 7:
+                return sizeofVariableLength(properties.contentEncoding().length());
+            case 8:
+            case 9:
+                return Byte.BYTES + Long.BYTES;
+            case 10:
+                return sizeofVariableLength(properties.groupId().length());
+            case 11:
+                return sizeofUInt(properties.groupSequence());
+            case 12:
+                return sizeofVariableLength(properties.replyToGroupId().length());
+            default:
+                throw new IllegalArgumentException("Unexpected property index: " + index);
+            }
+        }
+
+        private int encodeMessageProperty(
+            AmqpPropertiesFW properties,
+            int index,
+            MutableDirectBuffer buffer,
+            int offset)
+        {
+            if (!hasMessageProperty(properties, index))
+            {
+                buffer.putByte(offset, (byte) NULL.value());
+                return offset + Byte.BYTES;
+            }
+
+            switch (index)
+            {
+            case 0:
+                return encodeString(STRING1, STRING4, properties.messageId().stringtype(), buffer, offset);
+            case 1:
+                return encodeBinary(properties.userId().bytes(), buffer, offset);
+            case 2:
+                return encodeString(STRING1, STRING4, properties.to(), buffer, offset);
+            case 3:
+                return encodeString(STRING1, STRING4, properties.subject(), buffer, offset);
+            case 4:
+                return encodeString(STRING1, STRING4, properties.replyTo(), buffer, offset);
+            case 5:
+                return encodeString(STRING1, STRING4, properties.correlationId().stringtype(), buffer, offset);
+            case 6:
+                return encodeString(SYMBOL1, SYMBOL4, properties.contentType(), buffer, offset);
+            case 7:
+                return encodeString(SYMBOL1, SYMBOL4, properties.contentEncoding(), buffer, offset);
+            case 8:
+                return encodeTimestamp(properties.absoluteExpiryTime(), buffer, offset);
+            case 9:
+                return encodeTimestamp(properties.creationTime(), buffer, offset);
+            case 10:
+                return encodeString(STRING1, STRING4, properties.groupId(), buffer, offset);
+            case 11:
+                return encodeUInt(properties.groupSequence(), buffer, offset);
+            case 12:
+                return encodeString(STRING1, STRING4, properties.replyToGroupId(), buffer, offset);
+            default:
+                throw new IllegalArgumentException("Unexpected property index: " + index);
             }
         }
 
@@ -4130,41 +7468,73 @@ public final class AmqpServerFactory implements StreamFactory
             {
                 AmqpDescribedTypeFW type = messageAnnotationsSectionType;
                 messageFragmentRW.put(type.buffer(), type.offset(), type.sizeof());
-                messageFragmentRW.put((b, o, l) ->
-                {
-                    annotationsRW.wrap(b, o, l);
-                    value.forEach(this::encodeMessageAnnotation);
-                    return annotationsRW.build().sizeof();
-                });
+
+                this.encodableAnnotations = value;
+                messageFragmentRW.put(encodeMessageAnnotationsMap);
+                this.encodableAnnotations = null;
+            }
+        }
+
+        private int encodeMessageAnnotationsMap(
+            MutableDirectBuffer buffer,
+            int offset,
+            int maxLimit)
+        {
+            final Array32FW<AmqpAnnotationFW> annotations = encodableAnnotations;
+
+            this.encodableEntriesSize = 0;
+            annotations.forEach(sizeofMessageAnnotation);
+
+            final int entriesSize = encodableEntriesSize;
+            final int progress = encodeCompoundHeader(MAP1, MAP4, buffer, offset, entriesSize, annotations.fieldCount() << 1);
+            assert progress + entriesSize <= maxLimit;
+
+            this.encodeBuffer = buffer;
+            this.encodeProgress = progress;
+            annotations.forEach(encodeMessageAnnotation);
+            this.encodeBuffer = null;
+
+            return encodeProgress - offset;
+        }
+
+        private void sizeofMessageAnnotation(
+            AmqpAnnotationFW item)
+        {
+            final AmqpAnnotationKeyFW key = item.key();
+
+            int keySize = 0;
+            switch (key.kind())
+            {
+            case KIND_ID:
+                keySize = sizeofULong(key.id());
+                break;
+            case KIND_NAME:
+                keySize = sizeofVariableLength(key.name().length());
+                break;
             }
+
+            encodableEntriesSize += keySize + item.value().bytes().sizeof();
         }
 
         private void encodeMessageAnnotation(
             AmqpAnnotationFW item)
         {
             final AmqpAnnotationKeyFW key = item.key();
-            final OctetsFW valueBytes = item.value().bytes();
-            final AmqpValueFW value = valueBytes.get(amqpValueRO::wrap);
+            final OctetsFW value = item.value().bytes();
 
+            int progress = encodeProgress;
             switch (key.kind())
             {
             case KIND_ID:
-                AmqpULongFW id = amqpULongRW.wrap(valueBuffer, 0, valueBuffer.capacity())
-                    .set(key.id())
-                    .build();
-                annotationsRW.entry(
-                    k -> k.setAsAmqpULong(id),
-                    v -> v.set(value));
+                progress = encodeULong(key.id(), encodeBuffer, progress);
                 break;
             case KIND_NAME:
-                AmqpSymbolFW name = amqpSymbolRW.wrap(valueBuffer, 0, valueBuffer.capacity())
-                    .set(key.name())
-                    .build();
-                annotationsRW.entry(
-                    k -> k.setAsAmqpSymbol(name),
-                    v -> v.set(value));
+                progress = encodeString(SYMBOL1, SYMBOL4, key.name(), encodeBuffer, progress);
                 break;
             }
+
+            encodeBuffer.putBytes(progress, value.buffer(), value.offset(), value.sizeof());
+            encodeProgress = progress + value.sizeof();
         }
 
         private void encodeApplicationProperties(
@@ -4174,27 +7544,181 @@ public final class AmqpServerFactory implements StreamFactory
             {
                 AmqpDescribedTypeFW type = applicationPropertiesSectionType;
                 messageFragmentRW.put(type.buffer(), type.offset(), type.sizeof());
-                messageFragmentRW.put((b, o, l) ->
-                {
-                    applicationPropertiesRW.wrap(b, o, l);
-                    value.forEach(this::encodeApplicationProperty);
-                    return applicationPropertiesRW.build().sizeof();
-                });
+
+                this.encodableApplicationProperties = value;
+                messageFragmentRW.put(encodeApplicationPropertiesMap);
+                this.encodableApplicationProperties = null;
             }
         }
 
+        private int encodeApplicationPropertiesMap(
+            MutableDirectBuffer buffer,
+            int offset,
+            int maxLimit)
+        {
+            final Array32FW<AmqpApplicationPropertyFW> applicationProperties = encodableApplicationProperties;
+
+            this.encodableEntriesSize = 0;
+            applicationProperties.forEach(sizeofApplicationProperty);
+
+            final int entriesSize = encodableEntriesSize;
+            final int entryCount = applicationProperties.fieldCount() << 1;
+            final int progress = encodeCompoundHeader(MAP1, MAP4, buffer, offset, entriesSize, entryCount);
+            assert progress + entriesSize <= maxLimit;
+
+            this.encodeBuffer = buffer;
+            this.encodeProgress = progress;
+            applicationProperties.forEach(encodeApplicationProperty);
+            this.encodeBuffer = null;
+
+            return encodeProgress - offset;
+        }
+
+        private void sizeofApplicationProperty(
+            AmqpApplicationPropertyFW item)
+        {
+            encodableEntriesSize += sizeofVariableLength(item.key().length()) + item.value().bytes().sizeof();
+        }
+
         private void encodeApplicationProperty(
             AmqpApplicationPropertyFW item)
         {
-            final OctetsFW bytes = item.value().bytes();
-            DirectBuffer buffer = bytes.buffer();
-            int offset = bytes.offset();
-            int limit = bytes.limit();
+            final OctetsFW value = item.value().bytes();
+
+            final int progress = encodeString(STRING1, STRING4, item.key(), encodeBuffer, encodeProgress);
+            encodeBuffer.putBytes(progress, value.buffer(), value.offset(), value.sizeof());
+            encodeProgress = progress + value.sizeof();
+        }
+
+        private int encodeCompoundHeader(
+            AmqpType type1,
+            AmqpType type4,
+            MutableDirectBuffer buffer,
+            int offset,
+            int contentSize,
+            int count)
+        {
+            int progress = offset;
+            if (contentSize + Byte.BYTES <= 0xff && count <= 0xff)
+            {
+                buffer.putByte(progress++, (byte) type1.value());
+                buffer.putByte(progress++, (byte) (contentSize + Byte.BYTES));
+                buffer.putByte(progress++, (byte) count);
+            }
+            else
+            {
+                buffer.putByte(progress++, (byte) type4.value());
+                buffer.putInt(progress, contentSize + Integer.BYTES, BIG_ENDIAN);
+                progress += Integer.BYTES;
+                buffer.putInt(progress, count, BIG_ENDIAN);
+                progress += Integer.BYTES;
+            }
+            return progress;
+        }
+
+        private int encodeString(
+            AmqpType type1,
+            AmqpType type4,
+            StringFW value,
+            MutableDirectBuffer buffer,
+            int offset)
+        {
+            final int length = value.length();
+            final int valueOffset = value.offset() + value.sizeof() - length;
+            final int progress = encodeVariableLengthHeader(type1, type4, length, buffer, offset);
+            buffer.putBytes(progress, value.buffer(), valueOffset, length);
+            return progress + length;
+        }
+
+        private int encodeBinary(
+            OctetsFW value,
+            MutableDirectBuffer buffer,
+            int offset)
+        {
+            final int length = value.sizeof();
+            final int progress = encodeVariableLengthHeader(BINARY1, BINARY4, length, buffer, offset);
+            buffer.putBytes(progress, value.buffer(), value.offset(), length);
+            return progress + length;
+        }
+
+        private int encodeVariableLengthHeader(
+            AmqpType type1,
+            AmqpType type4,
+            int length,
+            MutableDirectBuffer buffer,
+            int offset)
+        {
+            int progress = offset;
+            if (length <= 0xff)
+            {
+                buffer.putByte(progress++, (byte) type1.value());
+                buffer.putByte(progress++, (byte) length);
+            }
+            else
+            {
+                buffer.putByte(progress++, (byte) type4.value());
+                buffer.putInt(progress, length, BIG_ENDIAN);
+                progress += Integer.BYTES;
+            }
+            return progress;
+        }
+
+        private int encodeTimestamp(
+            long value,
+            MutableDirectBuffer buffer,
+            int offset)
+        {
+            buffer.putByte(offset, (byte) TIMESTAMP.value());
+            buffer.putLong(offset + Byte.BYTES, value, BIG_ENDIAN);
+            return offset + Byte.BYTES + Long.BYTES;
+        }
 
-            StringFW key =  item.key();
-            AmqpSimpleTypeFW value = amqpSimpleTypeRO.tryWrap(buffer, offset, limit);
+        private int encodeUInt(
+            long value,
+            MutableDirectBuffer buffer,
+            int offset)
+        {
+            int progress = offset;
+            if (value == 0L)
+            {
+                buffer.putByte(progress++, (byte) UINT0.value());
+            }
+            else if (value <= 0xffL)
+            {
+                buffer.putByte(progress++, (byte) UINT1.value());
+                buffer.putByte(progress++, (byte) value);
+            }
+            else
+            {
+                buffer.putByte(progress++, (byte) UINT4.value());
+                buffer.putInt(progress, (int) value, BIG_ENDIAN);
+                progress += Integer.BYTES;
+            }
+            return progress;
+        }
 
-            applicationPropertiesRW.entry(k -> k.set(key), v -> v.set(value));
+        private int encodeULong(
+            long value,
+            MutableDirectBuffer buffer,
+            int offset)
+        {
+            int progress = offset;
+            if (value == 0L)
+            {
+                buffer.putByte(progress++, (byte) ULONG0.value());
+            }
+            else if (value > 0L && value <= 0xffL)
+            {
+                buffer.putByte(progress++, (byte) ULONG1.value());
+                buffer.putByte(progress++, (byte) value);
+            }
+            else
+            {
+                buffer.putByte(progress++, (byte) ULONG8.value());
+                buffer.putLong(progress, value, BIG_ENDIAN);
+                progress += Long.BYTES;
+            }
+            return progress;
         }
 
         private int encodeSectionData(
@@ -4236,12 +7760,10 @@ public final class AmqpServerFactory implements StreamFactory
             int offset,
             int limit)
         {
-            int progress = offset;
             int totalSize = limit - offset;
             int size = Math.min(encodableBytes, totalSize);
-            messageFragmentRW.put(buffer, offset, size);
+            int progress = encodeSectionBytes(buffer, offset, size, limit);
             this.encodableBytes = totalSize - size;
-            progress += size;
             if (encodableBytes > 0)
             {
                 this.sectionEncoder = this::encodeSectionData;
@@ -4286,12 +7808,10 @@ public final class AmqpServerFactory implements StreamFactory
             int offset,
             int limit)
         {
-            int progress = offset;
             int totalSize = limit - offset;
             int size = Math.min(encodableBytes, totalSize);
-            messageFragmentRW.put(buffer, offset, size);
+            int progress = encodeSectionBytes(buffer, offset, size, limit);
             this.encodableBytes = totalSize - size;
-            progress += size;
             if (encodableBytes > 0)
             {
                 this.sectionEncoder = this::encodeSectionSequence;
@@ -4496,18 +8016,63 @@ public final class AmqpServerFactory implements StreamFactory
             int offset,
             int limit)
         {
-            int progress = offset;
-            int size = limit - offset;
-            messageFragmentRW.put(buffer, offset, size);
-            progress += size;
+            return encodeSectionBytes(buffer, offset, limit - offset, limit);
+        }
+
+        private int encodeSectionBytes(
+            DirectBuffer buffer,
+            int offset,
+            int size,
+            int limit)
+        {
+            final int progress = offset + size;
+            if (progress == limit)
+            {
+                this.encodedBody = encodedBodyRO.wrap(buffer, offset, limit);
+            }
+            else
+            {
+                messageFragmentRW.put(buffer, offset, size);
+            }
             return progress;
         }
     }
 
     private final class AmqpMessageDecoder
     {
+        private final OctetsFW bareMessageRO = new OctetsFW();
+
         private int decodeOffset;
 
+        private OctetsFW decodeBareMessageInit(
+            AmqpServer.AmqpSession.AmqpServerStream stream,
+            DirectBuffer buffer,
+            int offset,
+            int limit,
+            AmqpDataExFW.Builder amqpDataEx)
+        {
+            decodeHeaders(buffer, offset, limit, stream);
+
+            amqpDataEx.annotations(annotationRW.wrap(frameBuffer, 0, frameBuffer.capacity()).build());
+            amqpDataEx.properties(propertyRW.wrap(frameBuffer, 0, frameBuffer.capacity()).build());
+            amqpDataEx.applicationProperties(applicationPropertyRW.wrap(frameBuffer, 0, frameBuffer.capacity()).build());
+
+            // bare message sections are relayed as-is, so body kind and deferred are not inspected downstream
+            stream.decodeBodyKind = AmqpBodyKind.DATA;
+            stream.decodableBytes = 0;
+
+            // sections are relayed in place, per-hop delivery annotations are dropped when encoded on the next hop
+            return decodeBareMessage(buffer, offset, limit);
+        }
+
+        private OctetsFW decodeBareMessage(
+            DirectBuffer buffer,
+            int offset,
+            int limit)
+        {
+            return bareMessageRO.wrap(buffer, offset, limit);
+        }
+
         private OctetsFW decodeFragmentInit(
             AmqpServer.AmqpSession.AmqpServerStream stream,
             DirectBuffer buffer,
@@ -5018,6 +8583,15 @@ public final class AmqpServerFactory implements StreamFactory
         }
     }
 
+    private static OctetsFW copyFrame(
+        DirectBuffer buffer,
+        int size)
+    {
+        final MutableDirectBuffer frame = new UnsafeBuffer(new byte[size]);
+        frame.putBytes(0, buffer, 0, size);
+        return new OctetsFW().wrap(frame, 0, size);
+    }
+
     private static StringFW[] asStringFWArray(
         String[] strings)
     {
@@ -5035,6 +8609,39 @@ public final class AmqpServerFactory implements StreamFactory
         return flyweights;
     }
 
+    private static int sizeofVariableLength(
+        int length)
+    {
+        return Byte.BYTES + (length <= 0xff ? Byte.BYTES : Integer.BYTES) + length;
+    }
+
+    private static int sizeofUInt(
+        long value)
+    {
+        return value == 0L ? Byte.BYTES : value <= 0xffL ? Byte.BYTES + Byte.BYTES : Byte.BYTES + Integer.BYTES;
+    }
+
+    private static int sizeofULong(
+        long value)
+    {
+        return value == 0L ? Byte.BYTES : value > 0L && value <= 0xffL ? Byte.BYTES + Byte.BYTES : Byte.BYTES + Long.BYTES;
+    }
+
+    private static boolean isRedeliverable(
+        AmqpDeliveryStateFW state)
+    {
+        return state.kind() == RELEASED ||
+            state.kind() == MODIFIED && state.modified().hasDeliveryFailed() && state.modified().deliveryFailed() == 1;
+    }
+
+    private static boolean sequenceWithin(
+        long value,
+        long first,
+        long last)
+    {
+        return ((value - first) & 0xFFFF_FFFFL) <= ((last - first) & 0xFFFF_FFFFL);
+    }
+
     private static long sequenceNext(
         long value)
     {
@@ -15,6 +15,7 @@
  */
 package org.reaktivity.nukleus.amqp.internal.stream;
 
+import java.util.function.Function;
 import java.util.function.LongFunction;
 import java.util.function.LongSupplier;
 import java.util.function.LongUnaryOperator;
@@ -45,6 +46,7 @@ public final class AmqpServerFactoryBuilder implements StreamFactoryBuilder
     private ToIntFunction<String> supplyTypeId;
     private BudgetCreditor creditor;
     private LongFunction<BudgetDebitor> supplyDebitor;
+    private Function<String, LongSupplier> supplyCounter;
     private Signaler signaler;
 
     public AmqpServerFactoryBuilder(
@@ -133,6 +135,14 @@ public final class AmqpServerFactoryBuilder implements StreamFactoryBuilder
         return this;
     }
 
+    @Override
+    public StreamFactoryBuilder setCounterSupplier(
+        Function<String, LongSupplier> supplyCounter)
+    {
+        this.supplyCounter = supplyCounter;
+        return this;
+    }
+
     @Override
     public StreamFactoryBuilder setSignaler(
         Signaler signaler)
@@ -158,6 +168,7 @@ public final class AmqpServerFactoryBuilder implements StreamFactoryBuilder
             supplyTraceId,
             supplyTypeId,
             supplyDebitor,
+            supplyCounter,
             signaler);
     }
 }
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+import org.agrona.BitUtil;
+
+public final class AmqpTimerWheel
+{
+    public static final int NO_TIMER = -1;
+
+    private static final int SLOT_FREE = -1;
+    private static final int SLOT_EXPIRING = -2;
+
+    private final long tickMillis;
+    private final int mask;
+    private final int[] heads;
+
+    private long[] deadlines;
+    private int[] slots;
+    private int[] nexts;
+    private int[] prevs;
+    private LongConsumer[] handlers;
+
+    private int freeHead;
+    private int size;
+    private long currentTick;
+
+    private int[] expiring;
+
+    public AmqpTimerWheel(
+        long tickMillis,
+        int wheelSize,
+        int initialCapacity)
+    {
+        assert tickMillis > 0L;
+        assert initialCapacity > 0;
+
+        final int wheelCapacity = BitUtil.findNextPositivePowerOfTwo(wheelSize);
+        this.tickMillis = tickMillis;
+        this.mask = wheelCapacity - 1;
+        this.heads = new int[wheelCapacity];
+        Arrays.fill(heads, NO_TIMER);
+
+        this.deadlines = new long[0];
+        this.slots = new int[0];
+        this.nexts = new int[0];
+        this.prevs = new int[0];
+        this.handlers = new LongConsumer[0];
+        this.freeHead = NO_TIMER;
+        this.expiring = new int[initialCapacity];
+        this.currentTick = -1L;
+
+        ensureCapacity(initialCapacity);
+    }
+
+    public long tickMillis()
+    {
+        return tickMillis;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int schedule(
+        long deadline,
+        LongConsumer handler)
+    {
+        assert handler != null;
+
+        if (freeHead == NO_TIMER)
+        {
+            ensureCapacity(deadlines.length << 1);
+        }
+
+        final int timerId = freeHead;
+        freeHead = nexts[timerId];
+
+        deadlines[timerId] = deadline;
+        handlers[timerId] = handler;
+        link(timerId, slot(deadline));
+        size++;
+
+        return timerId;
+    }
+
+    public void reschedule(
+        int timerId,
+        long deadline)
+    {
+        final int slot = slots[timerId];
+        assert slot != SLOT_FREE;
+
+        final long previous = deadlines[timerId];
+        deadlines[timerId] = deadline;
+
+        if (slot == SLOT_EXPIRING)
+        {
+            link(timerId, slot(deadline));
+        }
+        // deadlines that move later are picked up lazily when their current slot is visited
+        else if (deadline < previous)
+        {
+            final int newSlot = slot(deadline);
+            if (newSlot != slot)
+            {
+                unlink(timerId);
+                link(timerId, newSlot);
+            }
+        }
+    }
+
+    public boolean cancel(
+        int timerId)
+    {
+        final int slot = slots[timerId];
+        final boolean cancelled = slot != SLOT_FREE;
+
+        if (cancelled)
+        {
+            if (slot != SLOT_EXPIRING)
+            {
+                unlink(timerId);
+            }
+            release(timerId);
+        }
+
+        return cancelled;
+    }
+
+    public int expire(
+        long now)
+    {
+        final long nowTick = now / tickMillis;
+
+        if (currentTick < 0L)
+        {
+            currentTick = nowTick;
+        }
+
+        final long ticks = Math.min(nowTick - currentTick, mask) + 1L;
+
+        int expiringCount = 0;
+        for (long tick = nowTick - ticks + 1L; tick <= nowTick; tick++)
+        {
+            final int slot = (int) (tick & mask);
+
+            int timerId = heads[slot];
+            while (timerId != NO_TIMER)
+            {
+                final int nextId = nexts[timerId];
+                final long deadline = deadlines[timerId];
+
+                if (deadline <= now)
+                {
+                    unlink(timerId);
+                    slots[timerId] = SLOT_EXPIRING;
+
+                    if (expiringCount == expiring.length)
+                    {
+                        expiring = Arrays.copyOf(expiring, expiringCount << 1);
+                    }
+                    expiring[expiringCount++] = timerId;
+                }
+                else
+                {
+                    final int newSlot = slot(deadline);
+                    if (newSlot != slot)
+                    {
+                        unlink(timerId);
+                        link(timerId, newSlot);
+                    }
+                }
+
+                timerId = nextId;
+            }
+        }
+
+        currentTick = nowTick;
+
+        int expired = 0;
+        for (int index = 0; index < expiringCount; index++)
+        {
+            final int timerId = expiring[index];
+
+            // an earlier handler may have cancelled this timer
+            if (slots[timerId] == SLOT_EXPIRING)
+            {
+                final LongConsumer handler = handlers[timerId];
+                release(timerId);
+                handler.accept(now);
+                expired++;
+            }
+        }
+
+        return expired;
+    }
+
+    private int slot(
+        long deadline)
+    {
+        return (int) (Math.max(deadline / tickMillis, currentTick) & mask);
+    }
+
+    private void link(
+        int timerId,
+        int slot)
+    {
+        final int head = heads[slot];
+
+        slots[timerId] = slot;
+        prevs[timerId] = NO_TIMER;
+        nexts[timerId] = head;
+
+        if (head != NO_TIMER)
+        {
+            prevs[head] = timerId;
+        }
+        heads[slot] = timerId;
+    }
+
+    private void unlink(
+        int timerId)
+    {
+        final int slot = slots[timerId];
+        final int prev = prevs[timerId];
+        final int next = nexts[timerId];
+
+        if (prev != NO_TIMER)
+        {
+            nexts[prev] = next;
+        }
+        else
+        {
+            heads[slot] = next;
+        }
+
+        if (next != NO_TIMER)
+        {
+            prevs[next] = prev;
+        }
+
+        prevs[timerId] = NO_TIMER;
+        nexts[timerId] = NO_TIMER;
+    }
+
+    private void release(
+        int timerId)
+    {
+        slots[timerId] = SLOT_FREE;
+        handlers[timerId] = null;
+        nexts[timerId] = freeHead;
+        freeHead = timerId;
+        size--;
+    }
+
+    private void ensureCapacity(
+        int capacity)
+    {
+        final int oldCapacity = deadlines.length;
+
+        if (capacity > oldCapacity)
+        {
+            deadlines = Arrays.copyOf(deadlines, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+            nexts = Arrays.copyOf(nexts, capacity);
+            prevs = Arrays.copyOf(prevs, capacity);
+            handlers = Arrays.copyOf(handlers, capacity);
+
+            for (int timerId = capacity - 1; timerId >= oldCapacity; timerId--)
+            {
+                slots[timerId] = SLOT_FREE;
+                prevs[timerId] = NO_TIMER;
+                nexts[timerId] = freeHead;
+                freeHead = timerId;
+            }
+        }
+    }
+}
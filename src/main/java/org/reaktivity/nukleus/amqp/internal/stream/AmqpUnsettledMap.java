@@ -0,0 +1,547 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+public final class AmqpUnsettledMap
+{
+    public static final int MAX_TAG_SIZE = 32;
+    public static final int NO_OUTCOME = 0;
+    public static final long NO_DELIVERY_ID = -1L;
+
+    private static final long SEQUENCE_MASK = 0xFFFF_FFFFL;
+    private static final int STRAGGLERS_INITIAL_CAPACITY = 4;
+
+    private static final byte EMPTY = 0;
+    private static final byte UNSETTLED = 1;
+    private static final byte SETTLED = 2;
+
+    private byte[] states;
+    private byte[] outcomes;
+    private long[] positions;
+    private long[] ordinals;
+    private byte[] tagSizes;
+    private UnsafeBuffer tags;
+
+    private long[] stragglerIds;
+    private byte[] stragglerOutcomes;
+    private long[] stragglerPositions;
+    private byte[] stragglerTagSizes;
+    private UnsafeBuffer stragglerTags;
+
+    private final int maxCapacity;
+
+    private int mask;
+    private int head;
+    private int span;
+    private int count;
+    private int marked;
+    private int stragglers;
+    private long base;
+    private long added;
+    private long baseOrdinal;
+
+    public AmqpUnsettledMap(
+        int initialCapacity,
+        int maxCapacity)
+    {
+        final int capacity = BitUtil.findNextPositivePowerOfTwo(Math.max(initialCapacity, 2));
+
+        this.maxCapacity = Math.max(maxCapacity, capacity);
+
+        this.states = new byte[capacity];
+        this.outcomes = new byte[capacity];
+        this.positions = new long[capacity];
+        this.ordinals = new long[capacity];
+        this.tagSizes = new byte[capacity];
+        this.tags = new UnsafeBuffer(new byte[capacity * MAX_TAG_SIZE]);
+        this.mask = capacity - 1;
+
+        this.stragglerIds = new long[STRAGGLERS_INITIAL_CAPACITY];
+        this.stragglerOutcomes = new byte[STRAGGLERS_INITIAL_CAPACITY];
+        this.stragglerPositions = new long[STRAGGLERS_INITIAL_CAPACITY];
+        this.stragglerTagSizes = new byte[STRAGGLERS_INITIAL_CAPACITY];
+        this.stragglerTags = new UnsafeBuffer(new byte[STRAGGLERS_INITIAL_CAPACITY * MAX_TAG_SIZE]);
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public boolean isEmpty()
+    {
+        return count == 0;
+    }
+
+    public long first()
+    {
+        assert count != 0;
+        return stragglers != 0 ? stragglerIds[0] : base;
+    }
+
+    public long last()
+    {
+        assert count != 0;
+        return span != 0 ? (base + span - 1) & SEQUENCE_MASK : stragglerIds[stragglers - 1];
+    }
+
+    public boolean contains(
+        long deliveryId)
+    {
+        return indexOf(deliveryId) != -1 || stragglerIndexOf(deliveryId) != -1;
+    }
+
+    public boolean intersects(
+        long first,
+        long last)
+    {
+        final long extent = (last - first) & SEQUENCE_MASK;
+
+        boolean intersects = false;
+
+        for (int straggler = 0; straggler < stragglers && !intersects; straggler++)
+        {
+            intersects = ((stragglerIds[straggler] - first) & SEQUENCE_MASK) <= extent;
+        }
+
+        if (span != 0)
+        {
+            final long firstOffset = ((base - first) & SEQUENCE_MASK) <= extent ? 0L : (first - base) & SEQUENCE_MASK;
+            final long limit = Math.min(((last - base) & SEQUENCE_MASK) + 1, span);
+            for (long offset = firstOffset; offset < limit && !intersects; offset++)
+            {
+                intersects = states[index((int) offset)] == UNSETTLED;
+            }
+        }
+
+        return intersects;
+    }
+
+    public boolean add(
+        long deliveryId,
+        DirectBuffer tag,
+        int tagOffset,
+        int tagLength,
+        long position)
+    {
+        if (count >= maxCapacity)
+        {
+            return false;
+        }
+
+        long offset = span != 0 ? (deliveryId - base) & SEQUENCE_MASK : 0L;
+        assert offset >= span;
+
+        while (offset >= maxCapacity)
+        {
+            evict();
+            offset = span != 0 ? (deliveryId - base) & SEQUENCE_MASK : 0L;
+        }
+
+        if (span == 0)
+        {
+            head = 0;
+            base = deliveryId;
+            baseOrdinal = added;
+        }
+
+        ensureCapacity((int) offset + 1);
+
+        for (int hole = span; hole < offset; hole++)
+        {
+            final int index = index(hole);
+            states[index] = EMPTY;
+            ordinals[index] = added;
+        }
+
+        final int index = index((int) offset);
+        states[index] = UNSETTLED;
+        outcomes[index] = NO_OUTCOME;
+        positions[index] = position;
+        ordinals[index] = ++added;
+        count++;
+        final int tagSize = Math.min(tagLength, MAX_TAG_SIZE);
+        tagSizes[index] = (byte) tagSize;
+        if (tagSize > 0)
+        {
+            tags.putBytes(index * MAX_TAG_SIZE, tag, tagOffset, tagSize);
+        }
+
+        span = (int) offset + 1;
+
+        return true;
+    }
+
+    public long position(
+        long deliveryId)
+    {
+        final int index = indexOf(deliveryId);
+        return index != -1 ? positions[index] : stragglerPositions[stragglerIndexOf(deliveryId)];
+    }
+
+    public void position(
+        long deliveryId,
+        long position)
+    {
+        final int index = indexOf(deliveryId);
+        if (index != -1)
+        {
+            positions[index] = position;
+        }
+        else
+        {
+            stragglerPositions[stragglerIndexOf(deliveryId)] = position;
+        }
+    }
+
+    public int outcome(
+        long deliveryId)
+    {
+        final int index = indexOf(deliveryId);
+        return index != -1 ? outcomes[index] : stragglerOutcomes[stragglerIndexOf(deliveryId)];
+    }
+
+    public void outcome(
+        long deliveryId,
+        int outcome)
+    {
+        final int index = indexOf(deliveryId);
+        if (index != -1)
+        {
+            outcomes[index] = (byte) outcome;
+        }
+        else
+        {
+            stragglerOutcomes[stragglerIndexOf(deliveryId)] = (byte) outcome;
+        }
+    }
+
+    public int tag(
+        long deliveryId,
+        MutableDirectBuffer buffer,
+        int offset)
+    {
+        final int index = indexOf(deliveryId);
+        final int tagSize;
+        if (index != -1)
+        {
+            tagSize = tagSizes[index];
+            buffer.putBytes(offset, tags, index * MAX_TAG_SIZE, tagSize);
+        }
+        else
+        {
+            final int straggler = stragglerIndexOf(deliveryId);
+            tagSize = stragglerTagSizes[straggler];
+            buffer.putBytes(offset, stragglerTags, straggler * MAX_TAG_SIZE, tagSize);
+        }
+        return tagSize;
+    }
+
+    public long find(
+        DirectBuffer tag,
+        int tagOffset,
+        int tagLength)
+    {
+        long deliveryId = NO_DELIVERY_ID;
+
+        for (int straggler = 0; straggler < stragglers && deliveryId == NO_DELIVERY_ID; straggler++)
+        {
+            if (stragglerTagSizes[straggler] == tagLength &&
+                matches(stragglerTags, straggler * MAX_TAG_SIZE, tag, tagOffset, tagLength))
+            {
+                deliveryId = stragglerIds[straggler];
+            }
+        }
+
+        for (int offset = 0; offset < span && deliveryId == NO_DELIVERY_ID; offset++)
+        {
+            final int index = index(offset);
+            if (states[index] == UNSETTLED && tagSizes[index] == tagLength &&
+                matches(tags, index * MAX_TAG_SIZE, tag, tagOffset, tagLength))
+            {
+                deliveryId = (base + offset) & SEQUENCE_MASK;
+            }
+        }
+
+        return deliveryId;
+    }
+
+    public void settle(
+        long first,
+        long last)
+    {
+        final long extent = (last - first) & SEQUENCE_MASK;
+
+        if (stragglers != 0)
+        {
+            settleStragglers(first, extent);
+        }
+
+        if (span != 0)
+        {
+            final long lastOffset = (last - base) & SEQUENCE_MASK;
+
+            if (((base - first) & SEQUENCE_MASK) <= extent)
+            {
+                final int limit = (int) Math.min(lastOffset + 1, span);
+                final long limitOrdinal = ordinals[index(limit - 1)];
+                if (marked == 0)
+                {
+                    count -= (int) (limitOrdinal - baseOrdinal);
+                }
+                else
+                {
+                    for (int offset = 0; offset < limit; offset++)
+                    {
+                        final byte state = states[index(offset)];
+                        if (state == UNSETTLED)
+                        {
+                            count--;
+                        }
+                        else if (state == SETTLED)
+                        {
+                            marked--;
+                        }
+                    }
+                }
+                baseOrdinal = limitOrdinal;
+                advance(limit);
+                compact();
+            }
+            else
+            {
+                final long firstOffset = (first - base) & SEQUENCE_MASK;
+                final long limit = Math.min(lastOffset + 1, span);
+                for (long offset = firstOffset; offset < limit; offset++)
+                {
+                    final int index = index((int) offset);
+                    if (states[index] == UNSETTLED)
+                    {
+                        states[index] = SETTLED;
+                        count--;
+                        marked++;
+                    }
+                }
+            }
+        }
+    }
+
+    public void clear()
+    {
+        head = 0;
+        span = 0;
+        count = 0;
+        marked = 0;
+        stragglers = 0;
+    }
+
+    private void compact()
+    {
+        while (span != 0 && states[head] != UNSETTLED)
+        {
+            if (states[head] == SETTLED)
+            {
+                marked--;
+            }
+            baseOrdinal = ordinals[head];
+            advance(1);
+        }
+    }
+
+    private void evict()
+    {
+        if (states[head] == UNSETTLED)
+        {
+            ensureStragglersCapacity(stragglers + 1);
+            stragglerIds[stragglers] = base;
+            stragglerOutcomes[stragglers] = outcomes[head];
+            stragglerPositions[stragglers] = positions[head];
+            stragglerTagSizes[stragglers] = tagSizes[head];
+            stragglerTags.putBytes(stragglers * MAX_TAG_SIZE, tags, head * MAX_TAG_SIZE, tagSizes[head]);
+            stragglers++;
+        }
+
+        baseOrdinal = ordinals[head];
+        advance(1);
+        compact();
+    }
+
+    private void settleStragglers(
+        long first,
+        long extent)
+    {
+        int retained = 0;
+        for (int straggler = 0; straggler < stragglers; straggler++)
+        {
+            if (((stragglerIds[straggler] - first) & SEQUENCE_MASK) <= extent)
+            {
+                count--;
+            }
+            else
+            {
+                if (retained != straggler)
+                {
+                    stragglerIds[retained] = stragglerIds[straggler];
+                    stragglerOutcomes[retained] = stragglerOutcomes[straggler];
+                    stragglerPositions[retained] = stragglerPositions[straggler];
+                    stragglerTagSizes[retained] = stragglerTagSizes[straggler];
+                    stragglerTags.putBytes(retained * MAX_TAG_SIZE, stragglerTags, straggler * MAX_TAG_SIZE,
+                        stragglerTagSizes[straggler]);
+                }
+                retained++;
+            }
+        }
+        stragglers = retained;
+    }
+
+    private void advance(
+        int count)
+    {
+        head = (head + count) & mask;
+        span -= count;
+        base = (base + count) & SEQUENCE_MASK;
+    }
+
+    private int indexOf(
+        long deliveryId)
+    {
+        final long offset = (deliveryId - base) & SEQUENCE_MASK;
+        final int index = offset < span ? index((int) offset) : -1;
+        return index != -1 && states[index] == UNSETTLED ? index : -1;
+    }
+
+    private int stragglerIndexOf(
+        long deliveryId)
+    {
+        int index = -1;
+
+        if (stragglers != 0)
+        {
+            final long origin = stragglerIds[0];
+            final long key = (deliveryId - origin) & SEQUENCE_MASK;
+            int low = 0;
+            int high = stragglers - 1;
+            while (low <= high && index == -1)
+            {
+                final int middle = (low + high) >>> 1;
+                final long middleKey = (stragglerIds[middle] - origin) & SEQUENCE_MASK;
+                if (middleKey < key)
+                {
+                    low = middle + 1;
+                }
+                else if (middleKey > key)
+                {
+                    high = middle - 1;
+                }
+                else
+                {
+                    index = middle;
+                }
+            }
+        }
+
+        return index;
+    }
+
+    private int index(
+        int offset)
+    {
+        return (head + offset) & mask;
+    }
+
+    private void ensureCapacity(
+        int required)
+    {
+        final int capacity = mask + 1;
+        if (required > capacity)
+        {
+            final int newCapacity = BitUtil.findNextPositivePowerOfTwo(required);
+            final byte[] newStates = new byte[newCapacity];
+            final byte[] newOutcomes = new byte[newCapacity];
+            final long[] newPositions = new long[newCapacity];
+            final long[] newOrdinals = new long[newCapacity];
+            final byte[] newTagSizes = new byte[newCapacity];
+            final UnsafeBuffer newTags = new UnsafeBuffer(new byte[newCapacity * MAX_TAG_SIZE]);
+
+            for (int offset = 0; offset < span; offset++)
+            {
+                final int index = index(offset);
+                newStates[offset] = states[index];
+                newOutcomes[offset] = outcomes[index];
+                newPositions[offset] = positions[index];
+                newOrdinals[offset] = ordinals[index];
+                newTagSizes[offset] = tagSizes[index];
+                newTags.putBytes(offset * MAX_TAG_SIZE, tags, index * MAX_TAG_SIZE, tagSizes[index]);
+            }
+
+            this.states = newStates;
+            this.outcomes = newOutcomes;
+            this.positions = newPositions;
+            this.ordinals = newOrdinals;
+            this.tagSizes = newTagSizes;
+            this.tags = newTags;
+            this.mask = newCapacity - 1;
+            this.head = 0;
+        }
+    }
+
+    private void ensureStragglersCapacity(
+        int required)
+    {
+        final int capacity = stragglerIds.length;
+        if (required > capacity)
+        {
+            final int newCapacity = BitUtil.findNextPositivePowerOfTwo(required);
+            final long[] newIds = new long[newCapacity];
+            final byte[] newOutcomes = new byte[newCapacity];
+            final long[] newPositions = new long[newCapacity];
+            final byte[] newTagSizes = new byte[newCapacity];
+            final UnsafeBuffer newTags = new UnsafeBuffer(new byte[newCapacity * MAX_TAG_SIZE]);
+
+            System.arraycopy(stragglerIds, 0, newIds, 0, stragglers);
+            System.arraycopy(stragglerOutcomes, 0, newOutcomes, 0, stragglers);
+            System.arraycopy(stragglerPositions, 0, newPositions, 0, stragglers);
+            System.arraycopy(stragglerTagSizes, 0, newTagSizes, 0, stragglers);
+            newTags.putBytes(0, stragglerTags, 0, stragglers * MAX_TAG_SIZE);
+
+            this.stragglerIds = newIds;
+            this.stragglerOutcomes = newOutcomes;
+            this.stragglerPositions = newPositions;
+            this.stragglerTagSizes = newTagSizes;
+            this.stragglerTags = newTags;
+        }
+    }
+
+    private static boolean matches(
+        DirectBuffer buffer,
+        int offset,
+        DirectBuffer tag,
+        int tagOffset,
+        int tagLength)
+    {
+        int matched = 0;
+        while (matched < tagLength && buffer.getByte(offset + matched) == tag.getByte(tagOffset + matched))
+        {
+            matched++;
+        }
+        return matched == tagLength;
+    }
+}
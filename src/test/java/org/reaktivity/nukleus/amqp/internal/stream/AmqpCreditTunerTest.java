@@ -0,0 +1,135 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AmqpCreditTunerTest
+{
+    @Test
+    public void shouldUseMaximumCreditBeforeMeasurements() throws Exception
+    {
+        final AmqpCreditTuner tuner = new AmqpCreditTuner(4, 1024);
+
+        assertEquals(1024, tuner.credit());
+    }
+
+    @Test
+    public void shouldSizeCreditToBandwidthDelayProduct() throws Exception
+    {
+        final AmqpCreditTuner tuner = new AmqpCreditTuner(4, 1024);
+
+        assertTrue(tuner.onEchoRequested(1000L, 1024L));
+        assertFalse(tuner.onEchoRequested(1010L, 1024L));
+        tuner.onFlow(1050L, 1024L);
+
+        for (long now = 1000L; now <= 1100L; now++)
+        {
+            tuner.onDelivery(now);
+        }
+
+        // ~1 delivery/ms * 50ms round trip * 2x headroom
+        assertEquals(101, tuner.credit());
+    }
+
+    @Test
+    public void shouldClampCreditToMinimum() throws Exception
+    {
+        final AmqpCreditTuner tuner = new AmqpCreditTuner(16, 1024);
+
+        tuner.onEchoRequested(1000L, 1024L);
+        tuner.onFlow(1001L, 1024L);
+        tuner.onDelivery(1000L);
+        tuner.onDelivery(1200L);
+
+        assertEquals(16, tuner.credit());
+    }
+
+    @Test
+    public void shouldClampCreditToMaximum() throws Exception
+    {
+        final AmqpCreditTuner tuner = new AmqpCreditTuner(4, 64);
+
+        tuner.onEchoRequested(1000L, 64L);
+        tuner.onFlow(1500L, 64L);
+        for (long now = 1000L; now <= 1100L; now++)
+        {
+            tuner.onDelivery(now);
+        }
+
+        assertEquals(64, tuner.credit());
+    }
+
+    @Test
+    public void shouldIgnoreFlowNotAnsweringEcho() throws Exception
+    {
+        final AmqpCreditTuner tuner = new AmqpCreditTuner(4, 1024);
+
+        tuner.onEchoRequested(1000L, 1024L);
+        tuner.onFlow(1001L, 2048L);
+        tuner.onFlow(1050L, 1024L);
+
+        for (long now = 1000L; now <= 1100L; now++)
+        {
+            tuner.onDelivery(now);
+        }
+
+        assertEquals(101, tuner.credit());
+    }
+
+    @Test
+    public void shouldRestartEchoWhenCreditLimitChanges() throws Exception
+    {
+        final AmqpCreditTuner tuner = new AmqpCreditTuner(4, 1024);
+
+        assertTrue(tuner.onEchoRequested(1000L, 1024L));
+        assertTrue(tuner.onEchoRequested(1040L, 2048L));
+        tuner.onFlow(1050L, 1024L);
+        tuner.onFlow(1050L, 2048L);
+
+        for (long now = 1000L; now <= 1100L; now++)
+        {
+            tuner.onDelivery(now);
+        }
+
+        // ~1 delivery/ms * 10ms round trip * 2x headroom
+        assertEquals(21, tuner.credit());
+    }
+
+    @Test
+    public void shouldProbeBeyondCreditWhenExhausted() throws Exception
+    {
+        final AmqpCreditTuner tuner = new AmqpCreditTuner(4, 1024);
+
+        tuner.onEchoRequested(1000L, 1024L);
+        tuner.onFlow(1050L, 1024L);
+        for (long now = 1000L; now <= 1100L; now++)
+        {
+            tuner.onDelivery(now);
+        }
+        assertEquals(101, tuner.credit());
+
+        tuner.onCreditExhausted();
+        assertEquals(202, tuner.credit());
+
+        tuner.onCreditExhausted();
+        assertEquals(404, tuner.credit());
+    }
+}
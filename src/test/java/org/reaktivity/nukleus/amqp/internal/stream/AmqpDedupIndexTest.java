@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+public class AmqpDedupIndexTest
+{
+    @Test
+    public void shouldDetectDuplicateFingerprint() throws Exception
+    {
+        final AmqpDedupIndex index = new AmqpDedupIndex(4);
+
+        assertTrue(index.add(11L));
+        assertFalse(index.add(11L));
+        assertTrue(index.contains(11L));
+        assertFalse(index.contains(12L));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void shouldEvictOldestWhenFull() throws Exception
+    {
+        final AmqpDedupIndex index = new AmqpDedupIndex(3);
+
+        index.add(1L);
+        index.add(2L);
+        index.add(3L);
+        index.add(4L);
+
+        assertEquals(3, index.size());
+        assertFalse(index.contains(1L));
+        assertTrue(index.contains(2L));
+        assertTrue(index.contains(4L));
+
+        index.add(5L);
+
+        assertFalse(index.contains(2L));
+        assertTrue(index.contains(3L));
+    }
+
+    @Test
+    public void shouldRemoveWithoutBreakingCollisions() throws Exception
+    {
+        final AmqpDedupIndex index = new AmqpDedupIndex(1024);
+
+        for (long fingerprint = 1L; fingerprint <= 1024L; fingerprint++)
+        {
+            index.add(fingerprint * 0x1_0000_0001L);
+        }
+
+        for (long fingerprint = 1L; fingerprint <= 1024L; fingerprint += 2)
+        {
+            assertTrue(index.remove(fingerprint * 0x1_0000_0001L));
+        }
+
+        assertEquals(512, index.size());
+        for (long fingerprint = 1L; fingerprint <= 1024L; fingerprint++)
+        {
+            assertEquals(fingerprint % 2 == 0, index.contains(fingerprint * 0x1_0000_0001L));
+        }
+    }
+
+    @Test
+    public void shouldEvictInArrivalOrderAfterRemove() throws Exception
+    {
+        final AmqpDedupIndex index = new AmqpDedupIndex(3);
+
+        index.add(1L);
+        index.add(2L);
+        index.add(3L);
+        index.remove(2L);
+        index.add(4L);
+        index.add(5L);
+
+        assertFalse(index.contains(1L));
+        assertTrue(index.contains(3L));
+        assertTrue(index.contains(4L));
+        assertTrue(index.contains(5L));
+    }
+
+    @Test
+    public void shouldReuseEntriesAfterRemove() throws Exception
+    {
+        final AmqpDedupIndex index = new AmqpDedupIndex(2);
+
+        for (long fingerprint = 1L; fingerprint <= 64L; fingerprint++)
+        {
+            assertTrue(index.add(fingerprint));
+            assertTrue(index.remove(fingerprint));
+        }
+
+        assertEquals(0, index.size());
+        assertTrue(index.add(65L));
+        assertTrue(index.add(66L));
+        assertFalse(index.add(65L));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void shouldFingerprintTagBytes() throws Exception
+    {
+        final UnsafeBuffer tag = new UnsafeBuffer(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+
+        assertEquals(AmqpDedupIndex.fingerprint(tag, 0, 4), AmqpDedupIndex.fingerprint(tag, 0, 4));
+        assertNotEquals(AmqpDedupIndex.fingerprint(tag, 0, 4), AmqpDedupIndex.fingerprint(tag, 0, 3));
+        assertNotEquals(0L, AmqpDedupIndex.fingerprint(tag, 0, 0));
+    }
+}
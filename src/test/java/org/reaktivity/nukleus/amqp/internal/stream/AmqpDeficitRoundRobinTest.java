@@ -0,0 +1,123 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.agrona.collections.MutableInteger;
+import org.junit.Test;
+
+public class AmqpDeficitRoundRobinTest
+{
+    private static final int FRAME_SIZE = 100;
+
+    private final int[] queued = new int[8];
+    private final int[] drained = new int[8];
+    private final MutableInteger budget = new MutableInteger(Integer.MAX_VALUE);
+
+    private final AmqpDeficitRoundRobin scheduler = new AmqpDeficitRoundRobin(this::drain, this::pending, 2);
+
+    @Test
+    public void shouldDrainSingleEntry() throws Exception
+    {
+        final int entryId = scheduler.add(1);
+        queued[entryId] = 5;
+        scheduler.activate(entryId);
+
+        assertFalse(scheduler.isEmpty());
+        assertEquals(5 * FRAME_SIZE, scheduler.flush(FRAME_SIZE));
+        assertEquals(0, queued[entryId]);
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void shouldShareBudgetInProportionToWeight() throws Exception
+    {
+        final int bulkId = scheduler.add(1);
+        final int controlId = scheduler.add(3);
+        queued[bulkId] = 100;
+        queued[controlId] = 100;
+        scheduler.activate(bulkId);
+        scheduler.activate(controlId);
+
+        budget.value = 40 * FRAME_SIZE;
+        assertEquals(40 * FRAME_SIZE, scheduler.flush(FRAME_SIZE));
+
+        assertEquals(10, drained[bulkId]);
+        assertEquals(30, drained[controlId]);
+    }
+
+    @Test
+    public void shouldResumeBlockedEntryWithoutExtraQuantum() throws Exception
+    {
+        final int firstId = scheduler.add(2);
+        final int secondId = scheduler.add(2);
+        queued[firstId] = 10;
+        queued[secondId] = 10;
+        scheduler.activate(firstId);
+        scheduler.activate(secondId);
+
+        budget.value = FRAME_SIZE;
+        scheduler.flush(FRAME_SIZE);
+        assertEquals(1, drained[firstId]);
+        assertEquals(0, drained[secondId]);
+
+        budget.value = 2 * FRAME_SIZE;
+        scheduler.flush(FRAME_SIZE);
+        assertEquals(2, drained[firstId]);
+        assertEquals(1, drained[secondId]);
+    }
+
+    @Test
+    public void shouldSkipRemovedEntry() throws Exception
+    {
+        final int firstId = scheduler.add(1);
+        final int secondId = scheduler.add(1);
+        final int thirdId = scheduler.add(1);
+        queued[firstId] = 1;
+        queued[secondId] = 1;
+        queued[thirdId] = 1;
+        scheduler.activate(firstId);
+        scheduler.activate(secondId);
+        scheduler.activate(thirdId);
+
+        scheduler.remove(secondId);
+
+        assertEquals(2, scheduler.size());
+        assertEquals(2 * FRAME_SIZE, scheduler.flush(FRAME_SIZE));
+        assertEquals(0, drained[secondId]);
+        assertTrue(scheduler.isEmpty());
+    }
+
+    private int drain(
+        int entryId,
+        int limit)
+    {
+        final int frames = Math.min(queued[entryId], Math.min(limit, budget.value) / FRAME_SIZE);
+        queued[entryId] -= frames;
+        drained[entryId] += frames;
+        budget.value -= frames * FRAME_SIZE;
+        return frames * FRAME_SIZE;
+    }
+
+    private int pending(
+        int entryId)
+    {
+        return queued[entryId] > 0 ? FRAME_SIZE : 0;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AmqpMinimumTrackerTest
+{
+    @Test
+    public void shouldReportMaxValueWhenEmpty() throws Exception
+    {
+        final AmqpMinimumTracker tracker = new AmqpMinimumTracker(2);
+
+        assertTrue(tracker.isEmpty());
+        assertEquals(Integer.MAX_VALUE, tracker.minimum());
+    }
+
+    @Test
+    public void shouldTrackMinimumOnUpdate() throws Exception
+    {
+        final AmqpMinimumTracker tracker = new AmqpMinimumTracker(2);
+
+        final int first = tracker.add(10);
+        final int second = tracker.add(20);
+        final int third = tracker.add(30);
+        assertEquals(10, tracker.minimum());
+
+        tracker.update(first, 40);
+        assertEquals(20, tracker.minimum());
+
+        tracker.update(third, 5);
+        assertEquals(5, tracker.minimum());
+
+        tracker.update(second, 1);
+        assertEquals(1, tracker.minimum());
+        assertEquals(40, tracker.value(first));
+    }
+
+    @Test
+    public void shouldTrackMinimumOnRemove() throws Exception
+    {
+        final AmqpMinimumTracker tracker = new AmqpMinimumTracker(2);
+
+        final int first = tracker.add(10);
+        final int second = tracker.add(20);
+        tracker.add(30);
+
+        tracker.remove(first);
+        assertEquals(20, tracker.minimum());
+
+        tracker.remove(second);
+        assertEquals(30, tracker.minimum());
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    public void shouldMatchLinearScan() throws Exception
+    {
+        final AmqpMinimumTracker tracker = new AmqpMinimumTracker(4);
+        final Random random = new Random(42L);
+        final int[] entryIds = new int[64];
+        final int[] values = new int[64];
+
+        for (int i = 0; i < entryIds.length; i++)
+        {
+            values[i] = random.nextInt(1000);
+            entryIds[i] = tracker.add(values[i]);
+        }
+
+        for (int round = 0; round < 1000; round++)
+        {
+            final int index = random.nextInt(entryIds.length);
+            if (entryIds[index] == AmqpMinimumTracker.NO_ENTRY)
+            {
+                values[index] = random.nextInt(1000);
+                entryIds[index] = tracker.add(values[index]);
+            }
+            else if (random.nextInt(4) == 0)
+            {
+                tracker.remove(entryIds[index]);
+                entryIds[index] = AmqpMinimumTracker.NO_ENTRY;
+            }
+            else
+            {
+                values[index] = random.nextInt(1000);
+                tracker.update(entryIds[index], values[index]);
+            }
+
+            int expected = Integer.MAX_VALUE;
+            for (int i = 0; i < entryIds.length; i++)
+            {
+                if (entryIds[i] != AmqpMinimumTracker.NO_ENTRY)
+                {
+                    expected = Math.min(expected, values[i]);
+                }
+            }
+
+            assertEquals(expected, tracker.minimum());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class AmqpRecoveryStoreTest
+{
+    @Test
+    public void shouldTakeStoredRecoveryOnce() throws Exception
+    {
+        final AmqpRecoveryStore store = new AmqpRecoveryStore(4, 1000L);
+        final AmqpUnsettledMap deliveries = new AmqpUnsettledMap(2, 16);
+
+        store.store(1L, "client", "link", deliveries, 0L);
+
+        assertEquals(1, store.size());
+        assertSame(deliveries, store.take(1L, "client", "link", 10L));
+        assertNull(store.take(1L, "client", "link", 10L));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void shouldNotTakeRecoveryForOtherPrincipal() throws Exception
+    {
+        final AmqpRecoveryStore store = new AmqpRecoveryStore(4, 1000L);
+        final AmqpUnsettledMap deliveries = new AmqpUnsettledMap(2, 16);
+
+        store.store(1L, "client", "link", deliveries, 0L);
+
+        assertNull(store.take(2L, "client", "link", 10L));
+        assertSame(deliveries, store.take(1L, "client", "link", 10L));
+    }
+
+    @Test
+    public void shouldEvictOldestBeyondMaximumSize() throws Exception
+    {
+        final AmqpRecoveryStore store = new AmqpRecoveryStore(2, 1000L);
+        final AmqpUnsettledMap deliveries = new AmqpUnsettledMap(2, 16);
+
+        store.store(1L, "client1", "link", deliveries, 0L);
+        store.store(1L, "client2", "link", deliveries, 1L);
+        store.store(1L, "client3", "link", deliveries, 2L);
+
+        assertEquals(2, store.size());
+        assertNull(store.take(1L, "client1", "link", 3L));
+        assertSame(deliveries, store.take(1L, "client3", "link", 3L));
+    }
+
+    @Test
+    public void shouldExpireRecoveryAfterTimeout() throws Exception
+    {
+        final AmqpRecoveryStore store = new AmqpRecoveryStore(4, 1000L);
+        final AmqpUnsettledMap deliveries = new AmqpUnsettledMap(2, 16);
+
+        store.store(1L, "client", "link1", deliveries, 0L);
+        store.store(1L, "client", "link2", deliveries, 500L);
+
+        assertNull(store.take(1L, "client", "link1", 1000L));
+        assertEquals(1, store.size());
+
+        store.store(1L, "client", "link3", deliveries, 1500L);
+
+        assertEquals(1, store.size());
+        assertSame(deliveries, store.take(1L, "client", "link3", 1600L));
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AmqpRedeliveryBackoffTest
+{
+    @Test
+    public void shouldDoubleDelayPerRedelivery() throws Exception
+    {
+        final AmqpRedeliveryBackoff backoff = new AmqpRedeliveryBackoff(100L, 10_000L, 5);
+
+        assertEquals(100L, backoff.delay(0));
+        assertEquals(200L, backoff.delay(1));
+        assertEquals(400L, backoff.delay(2));
+        assertEquals(800L, backoff.delay(3));
+    }
+
+    @Test
+    public void shouldCapDelayAtMaximum() throws Exception
+    {
+        final AmqpRedeliveryBackoff backoff = new AmqpRedeliveryBackoff(100L, 1_000L, 5);
+
+        assertEquals(1_000L, backoff.delay(4));
+        assertEquals(1_000L, backoff.delay(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldExhaustAfterMaximumRedeliveries() throws Exception
+    {
+        final AmqpRedeliveryBackoff backoff = new AmqpRedeliveryBackoff(100L, 1_000L, 3);
+
+        assertFalse(backoff.exhausted(0));
+        assertFalse(backoff.exhausted(2));
+        assertTrue(backoff.exhausted(3));
+    }
+}
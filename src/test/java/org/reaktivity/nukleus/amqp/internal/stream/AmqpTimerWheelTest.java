@@ -0,0 +1,147 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.agrona.collections.MutableInteger;
+import org.junit.Test;
+
+public class AmqpTimerWheelTest
+{
+    @Test
+    public void shouldExpireTimerAtDeadline() throws Exception
+    {
+        final AmqpTimerWheel timers = new AmqpTimerWheel(100L, 8, 2);
+        final MutableInteger expired = new MutableInteger();
+
+        timers.expire(1000L);
+        timers.schedule(1250L, now -> expired.value++);
+
+        assertEquals(0, timers.expire(1200L));
+        assertEquals(0, expired.value);
+        assertEquals(1, timers.expire(1300L));
+        assertEquals(1, expired.value);
+        assertTrue(timers.isEmpty());
+    }
+
+    @Test
+    public void shouldDeferExpiryWhenRescheduledLater() throws Exception
+    {
+        final AmqpTimerWheel timers = new AmqpTimerWheel(100L, 8, 2);
+        final MutableInteger expired = new MutableInteger();
+
+        timers.expire(1000L);
+        final int timerId = timers.schedule(1200L, now -> expired.value++);
+        timers.reschedule(timerId, 1500L);
+
+        assertEquals(0, timers.expire(1200L));
+        assertEquals(0, timers.expire(1400L));
+        assertEquals(1, timers.expire(1500L));
+        assertEquals(1, expired.value);
+    }
+
+    @Test
+    public void shouldExpireWhenRescheduledEarlier() throws Exception
+    {
+        final AmqpTimerWheel timers = new AmqpTimerWheel(100L, 8, 2);
+        final MutableInteger expired = new MutableInteger();
+
+        timers.expire(1000L);
+        final int timerId = timers.schedule(1600L, now -> expired.value++);
+        timers.reschedule(timerId, 1100L);
+
+        assertEquals(1, timers.expire(1100L));
+        assertEquals(1, expired.value);
+    }
+
+    @Test
+    public void shouldExpireDeadlinesBeyondOneRotation() throws Exception
+    {
+        final AmqpTimerWheel timers = new AmqpTimerWheel(100L, 4, 2);
+        final MutableInteger expired = new MutableInteger();
+
+        timers.expire(1000L);
+        timers.schedule(2000L, now -> expired.value++);
+
+        for (long now = 1100L; now < 2000L; now += 100L)
+        {
+            assertEquals(0, timers.expire(now));
+        }
+        assertEquals(1, timers.expire(2000L));
+        assertEquals(1, expired.value);
+    }
+
+    @Test
+    public void shouldNotExpireCancelledTimer() throws Exception
+    {
+        final AmqpTimerWheel timers = new AmqpTimerWheel(100L, 8, 2);
+        final MutableInteger expired = new MutableInteger();
+
+        timers.expire(1000L);
+        final int timerId = timers.schedule(1200L, now -> expired.value++);
+
+        assertTrue(timers.cancel(timerId));
+        assertFalse(timers.cancel(timerId));
+        assertEquals(0, timers.expire(1300L));
+        assertEquals(0, expired.value);
+        assertTrue(timers.isEmpty());
+    }
+
+    @Test
+    public void shouldNotExpireTimerCancelledByEarlierHandler() throws Exception
+    {
+        final AmqpTimerWheel timers = new AmqpTimerWheel(100L, 8, 2);
+        final MutableInteger expired = new MutableInteger();
+        final MutableInteger firstId = new MutableInteger(AmqpTimerWheel.NO_TIMER);
+        final MutableInteger secondId = new MutableInteger(AmqpTimerWheel.NO_TIMER);
+
+        timers.expire(1000L);
+        firstId.value = timers.schedule(1100L, now ->
+        {
+            expired.value++;
+            timers.cancel(secondId.value);
+        });
+        secondId.value = timers.schedule(1100L, now ->
+        {
+            expired.value++;
+            timers.cancel(firstId.value);
+        });
+
+        assertEquals(1, timers.expire(1100L));
+        assertEquals(1, expired.value);
+        assertTrue(timers.isEmpty());
+    }
+
+    @Test
+    public void shouldGrowCapacity() throws Exception
+    {
+        final AmqpTimerWheel timers = new AmqpTimerWheel(100L, 8, 2);
+        final MutableInteger expired = new MutableInteger();
+
+        timers.expire(1000L);
+        for (int i = 0; i < 100; i++)
+        {
+            timers.schedule(1000L + i * 10L, now -> expired.value++);
+        }
+
+        assertEquals(100, timers.size());
+        assertEquals(100, timers.expire(2000L));
+        assertEquals(100, expired.value);
+    }
+}
@@ -0,0 +1,290 @@
+/**
+ * Copyright 2016-2020 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.amqp.internal.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+public class AmqpUnsettledMapTest
+{
+    private final UnsafeBuffer tag = new UnsafeBuffer(new byte[AmqpUnsettledMap.MAX_TAG_SIZE]);
+
+    @Test
+    public void shouldBeEmptyInitially() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 16);
+
+        assertTrue(unsettled.isEmpty());
+        assertEquals(0, unsettled.size());
+        assertFalse(unsettled.contains(0L));
+    }
+
+    @Test
+    public void shouldAddAndSettleRangeAtHead() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 16);
+
+        for (long deliveryId = 10L; deliveryId < 20L; deliveryId++)
+        {
+            unsettled.add(deliveryId, tag, 0, 0, deliveryId * 100L);
+        }
+
+        assertEquals(10, unsettled.size());
+        assertEquals(10L, unsettled.first());
+        assertEquals(19L, unsettled.last());
+        assertEquals(1500L, unsettled.position(15L));
+
+        unsettled.settle(0L, 14L);
+
+        assertEquals(5, unsettled.size());
+        assertEquals(15L, unsettled.first());
+        assertFalse(unsettled.contains(14L));
+        assertTrue(unsettled.contains(15L));
+
+        unsettled.settle(15L, 30L);
+
+        assertTrue(unsettled.isEmpty());
+    }
+
+    @Test
+    public void shouldCompactAfterSettlingBehindHead() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 16);
+
+        unsettled.add(1L, tag, 0, 0, 0L);
+        unsettled.add(3L, tag, 0, 0, 0L);
+        unsettled.add(5L, tag, 0, 0, 0L);
+        unsettled.add(7L, tag, 0, 0, 0L);
+
+        unsettled.settle(4L, 5L);
+
+        assertFalse(unsettled.contains(5L));
+        assertEquals(1L, unsettled.first());
+        assertEquals(3, unsettled.size());
+
+        unsettled.settle(1L, 3L);
+
+        assertEquals(7L, unsettled.first());
+        assertEquals(1, unsettled.size());
+    }
+
+    @Test
+    public void shouldSettleAcrossSequenceWrap() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 16);
+
+        unsettled.add(0xFFFF_FFFEL, tag, 0, 0, 0L);
+        unsettled.add(0xFFFF_FFFFL, tag, 0, 0, 0L);
+        unsettled.add(0L, tag, 0, 0, 0L);
+        unsettled.add(1L, tag, 0, 0, 0L);
+
+        assertEquals(1L, unsettled.last());
+
+        unsettled.settle(0xFFFF_FFF0L, 0L);
+
+        assertEquals(1L, unsettled.first());
+        assertEquals(1, unsettled.size());
+    }
+
+    @Test
+    public void shouldIntersectOnlyUnsettledDeliveries() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 16);
+
+        assertFalse(unsettled.intersects(0L, 10L));
+
+        unsettled.add(4L, tag, 0, 0, 0L);
+        unsettled.add(6L, tag, 0, 0, 0L);
+        unsettled.add(9L, tag, 0, 0, 0L);
+        unsettled.settle(6L, 6L);
+
+        assertTrue(unsettled.intersects(0L, 4L));
+        assertTrue(unsettled.intersects(5L, 9L));
+        assertTrue(unsettled.intersects(0xFFFF_FFF0L, 20L));
+        assertFalse(unsettled.intersects(0L, 3L));
+        assertFalse(unsettled.intersects(5L, 8L));
+        assertFalse(unsettled.intersects(10L, 20L));
+    }
+
+    @Test
+    public void shouldFindDeliveryByTag() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 16);
+
+        tag.putLong(0, 0x1122L);
+        unsettled.add(4L, tag, 0, Long.BYTES, 0L);
+        tag.putLong(0, 0x3344L);
+        unsettled.add(6L, tag, 0, Long.BYTES, 0L);
+
+        assertEquals(6L, unsettled.find(tag, 0, Long.BYTES));
+        assertEquals(AmqpUnsettledMap.NO_DELIVERY_ID, unsettled.find(tag, 0, Integer.BYTES));
+
+        unsettled.settle(6L, 6L);
+
+        assertEquals(AmqpUnsettledMap.NO_DELIVERY_ID, unsettled.find(tag, 0, Long.BYTES));
+    }
+
+    @Test
+    public void shouldCountOnlyUnsettledDeliveries() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 16);
+
+        unsettled.add(1L, tag, 0, 0, 0L);
+        unsettled.add(2L, tag, 0, 0, 0L);
+        unsettled.add(3L, tag, 0, 0, 0L);
+        unsettled.add(8L, tag, 0, 0, 0L);
+
+        unsettled.settle(3L, 3L);
+        unsettled.settle(3L, 3L);
+        unsettled.settle(8L, 8L);
+
+        assertEquals(2, unsettled.size());
+        assertEquals(1L, unsettled.first());
+
+        unsettled.settle(0L, 1L);
+
+        assertEquals(1, unsettled.size());
+        assertEquals(2L, unsettled.first());
+
+        unsettled.settle(2L, 2L);
+
+        assertEquals(0, unsettled.size());
+        assertTrue(unsettled.isEmpty());
+    }
+
+    @Test
+    public void shouldRejectDeliveryBeyondMaximumCount() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 4);
+
+        assertTrue(unsettled.add(100L, tag, 0, 0, 0L));
+        assertTrue(unsettled.add(101L, tag, 0, 0, 0L));
+        assertTrue(unsettled.add(102L, tag, 0, 0, 0L));
+        assertTrue(unsettled.add(103L, tag, 0, 0, 0L));
+        assertFalse(unsettled.add(104L, tag, 0, 0, 0L));
+
+        assertEquals(4, unsettled.size());
+        assertEquals(103L, unsettled.last());
+        assertFalse(unsettled.contains(104L));
+
+        unsettled.settle(101L, 101L);
+
+        assertTrue(unsettled.add(104L, tag, 0, 0, 0L));
+        assertEquals(4, unsettled.size());
+    }
+
+    @Test
+    public void shouldTrackDeliveriesBeyondStraggler() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 16);
+        final UnsafeBuffer copy = new UnsafeBuffer(new byte[AmqpUnsettledMap.MAX_TAG_SIZE]);
+
+        tag.putLong(0, 0x1122L);
+        assertTrue(unsettled.add(100L, tag, 0, Long.BYTES, 42L));
+        unsettled.outcome(100L, 3);
+
+        for (long deliveryId = 101L; deliveryId < 1_000L; deliveryId++)
+        {
+            tag.putLong(0, deliveryId);
+            assertTrue(unsettled.add(deliveryId, tag, 0, Long.BYTES, deliveryId));
+            unsettled.settle(deliveryId, deliveryId);
+        }
+
+        tag.putLong(0, 0x3344L);
+        assertTrue(unsettled.add(1_000L, tag, 0, Long.BYTES, 1_000L));
+
+        assertEquals(2, unsettled.size());
+        assertEquals(100L, unsettled.first());
+        assertEquals(1_000L, unsettled.last());
+        assertTrue(unsettled.contains(100L));
+        assertFalse(unsettled.contains(500L));
+        assertEquals(42L, unsettled.position(100L));
+        assertEquals(3, unsettled.outcome(100L));
+        assertEquals(Long.BYTES, unsettled.tag(100L, copy, 0));
+        assertEquals(0x1122L, copy.getLong(0));
+        assertTrue(unsettled.intersects(0L, 100L));
+        assertFalse(unsettled.intersects(101L, 999L));
+
+        tag.putLong(0, 0x1122L);
+        assertEquals(100L, unsettled.find(tag, 0, Long.BYTES));
+
+        unsettled.settle(0L, 100L);
+
+        assertEquals(1, unsettled.size());
+        assertEquals(1_000L, unsettled.first());
+        assertFalse(unsettled.contains(100L));
+        assertEquals(AmqpUnsettledMap.NO_DELIVERY_ID, unsettled.find(tag, 0, Long.BYTES));
+
+        unsettled.settle(1_000L, 1_000L);
+
+        assertTrue(unsettled.isEmpty());
+    }
+
+    @Test
+    public void shouldSettleHeadRangeAcrossGapsAndSettledDeliveries() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 64);
+
+        unsettled.add(1L, tag, 0, 0, 0L);
+        unsettled.add(4L, tag, 0, 0, 0L);
+        unsettled.add(5L, tag, 0, 0, 0L);
+        unsettled.add(9L, tag, 0, 0, 0L);
+        unsettled.add(12L, tag, 0, 0, 0L);
+
+        unsettled.settle(1L, 5L);
+
+        assertEquals(2, unsettled.size());
+        assertEquals(9L, unsettled.first());
+
+        unsettled.add(13L, tag, 0, 0, 0L);
+        unsettled.add(14L, tag, 0, 0, 0L);
+        unsettled.settle(13L, 13L);
+        unsettled.settle(0L, 13L);
+
+        assertEquals(1, unsettled.size());
+        assertEquals(14L, unsettled.first());
+    }
+
+    @Test
+    public void shouldRetainTagAndOutcomeWhenGrowing() throws Exception
+    {
+        final AmqpUnsettledMap unsettled = new AmqpUnsettledMap(2, 1 << 18);
+        final UnsafeBuffer copy = new UnsafeBuffer(new byte[AmqpUnsettledMap.MAX_TAG_SIZE]);
+
+        for (int deliveryId = 0; deliveryId < 200_000; deliveryId++)
+        {
+            tag.putInt(0, deliveryId);
+            unsettled.add(deliveryId, tag, 0, Integer.BYTES, deliveryId);
+        }
+
+        unsettled.settle(0L, 99_999L);
+        unsettled.outcome(150_000L, 2);
+
+        tag.putInt(0, 200_000);
+        unsettled.add(200_000L, tag, 0, Integer.BYTES, 200_000L);
+
+        assertEquals(100_001, unsettled.size());
+        assertEquals(Integer.BYTES, unsettled.tag(150_000L, copy, 0));
+        assertEquals(150_000, copy.getInt(0));
+        assertEquals(2, unsettled.outcome(150_000L));
+        assertEquals(AmqpUnsettledMap.NO_OUTCOME, unsettled.outcome(150_001L));
+        assertEquals(200_000L, unsettled.position(200_000L));
+    }
+}